@@ -0,0 +1,117 @@
+package com.customs;
+
+import org.apache.xml.security.c14n.Canonicalizer;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+import javax.xml.parsers.DocumentBuilder;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Общее состояние бенчмарков: подписанный конверт заданного размера и
+ * промежуточные результаты каждой стадии, чтобы любая стадия измерялась изолированно.
+ */
+@State(Scope.Benchmark)
+public class EnvelopeState {
+
+    /**
+     * Размер конверта в байтах: 1 КБ, 100 КБ и 10 МБ.
+     */
+    @Param({"1024", "102400", "10485760"})
+    public int envelopeSize;
+
+    SignatureVerifier verifier;
+    /**
+     * Верификатор без ограничений разбора и с разрешенным DOCTYPE, для оценки их стоимости.
+     */
+    SignatureVerifier unlimitedVerifier;
+    byte[] envelope;
+    File publicKeyFile;
+    PublicKey publicKey;
+    /**
+     * Ключи при смене ключа отправителя: сначала чужой, затем ключ подписи.
+     */
+    List<PublicKey> rotationKeys;
+    Document document;
+    Node bodyNode;
+    List<Node> bodyElements;
+    List<Document> strippedBodies;
+    byte[] canonicalBody;
+    String signatureBase64;
+    DocumentBuilder documentBuilder;
+    Canonicalizer canonicalizer;
+    MessagePreScreen preScreen;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        Envelopes.Signed signed = Envelopes.generate(envelopeSize);
+        // Ограничение размера включено, чтобы стадия parse учитывала подсчет прочитанных байтов
+        verifier = SignatureVerifier.builder().maxDocumentBytes(2L * envelopeSize).build();
+        unlimitedVerifier = SignatureVerifier.builder()
+                .maxElementDepth(0)
+                .maxAttributes(0)
+                .maxEntityExpansions(0)
+                .allowDoctype(true)
+                .build();
+        envelope = signed.envelope;
+        publicKeyFile = signed.publicKeyFile;
+        publicKey = signed.keyPair.getPublic();
+        documentBuilder = XmlSignatureProcessor.createDocumentBuilderFactory().newDocumentBuilder();
+        canonicalizer = Canonicalizer.getInstance(Canonicalizer.ALGO_ID_C14N_OMIT_COMMENTS);
+        preScreen = new MessagePreScreen(Set.of(SoapVersion.SOAP_2001_06.getNamespace()), "Signature");
+
+        document = verifier.parse(new ByteArrayInputStream(envelope));
+        signatureBase64 = verifier.extractSignatureBase64(document);
+        canonicalBody = verifier.canonicalizeSoapBody(document);
+
+        bodyElements = new ArrayList<>();
+        strippedBodies = new ArrayList<>();
+        Node envelopeElement = document.getDocumentElement();
+        for (Node child = envelopeElement.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if ("Body".equals(child.getLocalName())) {
+                bodyNode = child;
+                for (Node bodyChild = child.getFirstChild(); bodyChild != null; bodyChild = bodyChild.getNextSibling()) {
+                    if (bodyChild.getNodeType() == Node.ELEMENT_NODE) {
+                        bodyElements.add(bodyChild);
+                        strippedBodies.add(XmlSignatureProcessor.removeAllNamespaces(bodyChild, documentBuilder));
+                    }
+                }
+            }
+        }
+        // Собственные писатели C14N должны совпадать с Santuario побайтно, иначе сравнение времени бессмысленно
+        ByteArrayOutputStream santuarioBody = new ByteArrayOutputStream(canonicalBody.length);
+        for (Document stripped : strippedBodies) {
+            canonicalizer.canonicalizeSubtree(stripped.getDocumentElement(), santuarioBody);
+        }
+        if (!Arrays.equals(santuarioBody.toByteArray(), canonicalBody)
+                || !Arrays.equals(verifier.canonicalizeSoapBodyStreaming(new ByteArrayInputStream(envelope)), canonicalBody)) {
+            throw new IllegalStateException("Canonical form differs from Santuario output");
+        }
+        if (!verifier.verify(envelope, publicKeyFile)) {
+            throw new IllegalStateException("Generated envelope does not verify");
+        }
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        PublicKey otherKey = generator.generateKeyPair().getPublic();
+        rotationKeys = List.of(otherKey, publicKey);
+        // Проверка по одному хешу должна совпадать с Signature для каждого ключа
+        if (!verifier.verify(document, rotationKeys)
+                || verifier.verify(document, List.of(otherKey, otherKey))
+                || verifier.verifySignature(canonicalBody, signatureBase64, otherKey)) {
+            throw new IllegalStateException("Digest-once verification differs from Signature");
+        }
+    }
+}
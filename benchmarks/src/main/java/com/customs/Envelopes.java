@@ -0,0 +1,86 @@
+package com.customs;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.util.Base64;
+
+/**
+ * Генератор подписанных SOAP-конвертов заданного размера для бенчмарков.
+ * Тело похоже на таможенную декларацию: повторяющиеся позиции с префиксами,
+ * атрибутами из разных пространств имен и текстом, требующим экранирования.
+ */
+final class Envelopes {
+
+    private Envelopes() {
+    }
+
+    /**
+     * Подписанный конверт и ключ для его проверки.
+     */
+    static final class Signed {
+        final byte[] envelope;
+        final File publicKeyFile;
+        final KeyPair keyPair;
+
+        Signed(byte[] envelope, File publicKeyFile, KeyPair keyPair) {
+            this.envelope = envelope;
+            this.publicKeyFile = publicKeyFile;
+            this.keyPair = keyPair;
+        }
+    }
+
+    /**
+     * Создает конверт размером не меньше заданного, подписанный новым ключом RSA 2048.
+     * Публичный ключ записывается во временный PEM-файл, который удаляется при выходе из JVM.
+     * @param size Приблизительный размер конверта в байтах.
+     * @return Подписанный конверт.
+     * @throws Exception при ошибке генерации ключа или подписи.
+     */
+    static Signed generate(int size) throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keyPair = generator.generateKeyPair();
+
+        String body = body(size);
+        byte[] canonical = XmlSignatureProcessor.canonicalizeSoapBody(envelope(body, ""));
+        Signature signer = Signature.getInstance("SHA512withRSA");
+        signer.initSign(keyPair.getPrivate());
+        signer.update(canonical);
+        String signature = Base64.getEncoder().encodeToString(signer.sign());
+
+        File pem = File.createTempFile("benchmark-key", ".pem");
+        pem.deleteOnExit();
+        String encoded = Base64.getMimeEncoder(64, "\n".getBytes(StandardCharsets.US_ASCII))
+                .encodeToString(keyPair.getPublic().getEncoded());
+        Files.write(pem.toPath(), ("-----BEGIN PUBLIC KEY-----\n" + encoded + "\n-----END PUBLIC KEY-----\n")
+                .getBytes(StandardCharsets.US_ASCII));
+
+        return new Signed(envelope(body, signature).getBytes(StandardCharsets.UTF_8), pem, keyPair);
+    }
+
+    private static String envelope(String body, String signature) {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<soap:Envelope xmlns:soap=\"" + SoapVersion.SOAP_2001_06.getNamespace() + "\">"
+                + "<soap:Header><Signature>" + signature + "</Signature></soap:Header>"
+                + "<soap:Body>" + body + "</soap:Body></soap:Envelope>";
+    }
+
+    private static String body(int size) {
+        StringBuilder body = new StringBuilder(size + 512);
+        body.append("<dec:Declaration xmlns:dec=\"urn:customs:declaration\" xmlns:cat=\"urn:customs:catalog\" number=\"KG-0001\">\n");
+        int item = 0;
+        while (body.length() < size) {
+            body.append("  <dec:Item line=\"").append(item).append("\" cat:code=\"8471300000\" currency=\"KGS\">")
+                    .append("<cat:Description>Портативный компьютер &amp; комплектующие &lt;").append(item).append("&gt;</cat:Description>")
+                    .append("<dec:Weight unit=\"kg\">").append(item % 97).append(".5</dec:Weight>")
+                    .append("<dec:Value>").append(item * 13L).append("</dec:Value>")
+                    .append("</dec:Item>\n");
+            item++;
+        }
+        return body.append("</dec:Declaration>").toString();
+    }
+}
@@ -0,0 +1,91 @@
+package com.customs;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Загрузка публичного ключа не зависит от размера конверта, поэтому вынесена
+ * из {@link VerificationStagesBenchmark}: разбор PEM без кеша, обращение к кешу ключей
+ * выбор ключа отправителя в индексе из {@link #SENDER_COUNT} контрагентов и поиск серийного номера
+ * в CRL из {@link #REVOKED_COUNT} отозванных сертификатов.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KeyLoadingBenchmark {
+
+    private static final int SENDER_COUNT = 500;
+    private static final int REVOKED_COUNT = 100_000;
+
+    private File publicKeyFile;
+    private PublicKeyCache keyCache;
+    private PemDirectoryKeyIndex keyIndex;
+    private RevocationList revocationList;
+    private BigInteger validSerial;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        publicKeyFile = Envelopes.generate(0).publicKeyFile;
+        keyCache = new PublicKeyCache(PublicKeyCache.DEFAULT_MAX_ENTRIES, null);
+
+        Path keyDirectory = Files.createTempDirectory("benchmark-keys");
+        keyDirectory.toFile().deleteOnExit();
+        for (int i = 0; i < SENDER_COUNT; i++) {
+            Path pem = keyDirectory.resolve("sender-" + i + ".pem");
+            Files.copy(publicKeyFile.toPath(), pem, StandardCopyOption.REPLACE_EXISTING);
+            pem.toFile().deleteOnExit();
+        }
+        keyIndex = new PemDirectoryKeyIndex(keyDirectory);
+
+        Random random = new Random(42);
+        List<BigInteger> revokedSerials = new ArrayList<>(REVOKED_COUNT);
+        for (int i = 0; i < REVOKED_COUNT; i++) {
+            revokedSerials.add(new BigInteger(63, random));
+        }
+        revocationList = new RevocationList(revokedSerials, Long.MAX_VALUE);
+        validSerial = new BigInteger(63, random);
+    }
+
+    @Benchmark
+    public PublicKey loadPublicKeyFromPem() throws Exception {
+        return XmlSignatureProcessor.loadPublicKeyFromPem(publicKeyFile);
+    }
+
+    @Benchmark
+    public PublicKey cachedPublicKey() throws Exception {
+        return keyCache.get(publicKeyFile).getPublicKey();
+    }
+
+    @Benchmark
+    public List<TrustedKey> resolvedPublicKey() {
+        return keyIndex.resolve("sender-" + SENDER_COUNT / 2);
+    }
+
+    @Benchmark
+    public boolean revocationLookup() {
+        return revocationList.isRevoked(validSerial);
+    }
+}
@@ -0,0 +1,81 @@
+package com.customs;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.DocumentBuilder;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Итеративное удаление пространств имен против прежней рекурсивной реализации
+ * на дереве заданной глубины: на каждом уровне, кроме вложенного элемента, есть
+ * несколько листьев с атрибутами и текстом.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NamespaceRemovalBenchmark {
+
+    /**
+     * Глубина вложенности элементов.
+     */
+    @Param({"16", "256", "2048"})
+    public int depth;
+
+    private Node root;
+    private DocumentBuilder documentBuilder;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        documentBuilder = XmlSignatureProcessor.createDocumentBuilderFactory().newDocumentBuilder();
+        Document document = documentBuilder.parse(new InputSource(new StringReader(nested(depth))));
+        root = document.getDocumentElement();
+
+        Document iterative = XmlSignatureProcessor.removeAllNamespaces(root, documentBuilder);
+        Document recursive = RecursiveNamespaceRemoval.removeAllNamespaces(root, documentBuilder);
+        if (!iterative.getDocumentElement().isEqualNode(recursive.getDocumentElement())) {
+            throw new IllegalStateException("Iterative namespace removal differs from the recursive one");
+        }
+    }
+
+    @Benchmark
+    public Document iterative() {
+        return XmlSignatureProcessor.removeAllNamespaces(root, documentBuilder);
+    }
+
+    @Benchmark
+    public Document recursive() {
+        return RecursiveNamespaceRemoval.removeAllNamespaces(root, documentBuilder);
+    }
+
+    private static String nested(int depth) {
+        StringBuilder xml = new StringBuilder(depth * 160);
+        for (int level = 0; level < depth; level++) {
+            xml.append("<d:Level xmlns:d=\"urn:customs:declaration\" number=\"").append(level).append("\" d:ref=\"x\">");
+            for (int leaf = 0; leaf < 3; leaf++) {
+                xml.append("<d:Item code=\"").append(leaf).append("\">Товар ").append(level).append("</d:Item>");
+            }
+        }
+        for (int level = 0; level < depth; level++) {
+            xml.append("</d:Level>");
+        }
+        return xml.toString();
+    }
+}
@@ -0,0 +1,47 @@
+package com.customs;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilder;
+
+/**
+ * Прежняя рекурсивная реализация удаления пространств имен из {@link XmlSignatureProcessor},
+ * сохраненная как эталон для {@link NamespaceRemovalBenchmark}.
+ */
+final class RecursiveNamespaceRemoval {
+
+    private RecursiveNamespaceRemoval() {
+    }
+
+    static Document removeAllNamespaces(Node sourceNode, DocumentBuilder db) {
+        Document doc = db.newDocument();
+        doc.appendChild(removeNamespacesRecursive(sourceNode, doc));
+        return doc;
+    }
+
+    private static Node removeNamespacesRecursive(Node node, Document document) {
+        if (node.getNodeType() == Node.ELEMENT_NODE) {
+            Element newElement = document.createElement(node.getLocalName());
+
+            NamedNodeMap attributes = node.getAttributes();
+            for (int i = 0; i < attributes.getLength(); i++) {
+                Node attr = attributes.item(i);
+                if (!attr.getNodeName().startsWith("xmlns") && attr.getNamespaceURI() == null) {
+                    newElement.setAttribute(attr.getLocalName(), attr.getNodeValue());
+                }
+            }
+
+            NodeList children = node.getChildNodes();
+            for (int i = 0; i < children.getLength(); i++) {
+                newElement.appendChild(removeNamespacesRecursive(children.item(i), document));
+            }
+            return newElement;
+        } else {
+            return document.importNode(node, true);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.customs;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.security.PublicKey;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарки отдельных стадий проверки подписи {@link XmlSignatureProcessor}.
+ * Каждая стадия получает готовый результат предыдущей из {@link EnvelopeState},
+ * поэтому время и аллокации (профилировщик gc) относятся только к ней.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VerificationStagesBenchmark {
+
+    @Benchmark
+    public void preScreen(EnvelopeState state) throws Exception {
+        state.preScreen.check(ByteBuffer.wrap(state.envelope), state.publicKey);
+    }
+
+    @Benchmark
+    public Document parse(EnvelopeState state) throws Exception {
+        return state.verifier.parse(new ByteArrayInputStream(state.envelope));
+    }
+
+    @Benchmark
+    public Document parseWithoutLimits(EnvelopeState state) throws Exception {
+        return state.unlimitedVerifier.parse(new ByteArrayInputStream(state.envelope));
+    }
+
+    @Benchmark
+    public String signatureLookup(EnvelopeState state) throws Exception {
+        return state.verifier.extractSignatureBase64(state.document);
+    }
+
+    @Benchmark
+    public void removeAllNamespaces(EnvelopeState state, Blackhole blackhole) {
+        for (Node element : state.bodyElements) {
+            blackhole.consume(XmlSignatureProcessor.removeAllNamespaces(element, state.documentBuilder));
+        }
+    }
+
+    @Benchmark
+    public int canonicalizeSubtree(EnvelopeState state) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(state.canonicalBody.length);
+        for (Document stripped : state.strippedBodies) {
+            state.canonicalizer.canonicalizeSubtree(stripped.getDocumentElement(), out);
+        }
+        return out.size();
+    }
+
+    @Benchmark
+    public int canonicalizeInPlace(EnvelopeState state) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(state.canonicalBody.length);
+        DomCanonicalizer.canonicalizeChildren(state.bodyNode, out);
+        return out.size();
+    }
+
+    @Benchmark
+    public boolean rsaVerify(EnvelopeState state) throws Exception {
+        return state.verifier.verifySignature(state.canonicalBody, state.signatureBase64, state.publicKey);
+    }
+
+    @Benchmark
+    public boolean rotationDigestOnce(EnvelopeState state) throws Exception {
+        return state.verifier.verify(state.document, state.rotationKeys);
+    }
+
+    @Benchmark
+    public boolean rotationSignaturePerKey(EnvelopeState state) throws Exception {
+        byte[] canonicalBytes = state.verifier.canonicalizeSoapBody(state.document);
+        for (PublicKey publicKey : state.rotationKeys) {
+            if (state.verifier.verifySignature(canonicalBytes, state.signatureBase64, publicKey)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Benchmark
+    public boolean endToEnd(EnvelopeState state) throws Exception {
+        return state.verifier.verify(state.envelope, state.publicKeyFile);
+    }
+}
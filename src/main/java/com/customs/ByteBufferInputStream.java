@@ -0,0 +1,62 @@
+package com.customs;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * InputStream поверх ByteBuffer без копирования содержимого.
+ * Читает оставшиеся байты буфера (от position до limit) через его дубликат,
+ * поэтому позиция переданного буфера не меняется. Подходит для direct- и mapped-буферов.
+ */
+final class ByteBufferInputStream extends InputStream {
+
+    private final ByteBuffer buffer;
+
+    private ByteBufferInputStream(ByteBuffer buffer) {
+        this.buffer = buffer.duplicate();
+    }
+
+    /**
+     * Возвращает поток для оставшихся байтов буфера.
+     * Для буфера в куче с доступным массивом используется ByteArrayInputStream над тем же массивом.
+     * @param buffer Буфер с XML-документом.
+     * @return Поток, читающий буфер без копирования.
+     */
+    static InputStream of(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            return new ByteArrayInputStream(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        }
+        return new ByteBufferInputStream(buffer);
+    }
+
+    @Override
+    public int read() {
+        return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (len == 0) {
+            return 0;
+        }
+        if (!buffer.hasRemaining()) {
+            return -1;
+        }
+        int count = Math.min(len, buffer.remaining());
+        buffer.get(b, off, count);
+        return count;
+    }
+
+    @Override
+    public long skip(long n) {
+        int count = (int) Math.max(0, Math.min(n, buffer.remaining()));
+        buffer.position(buffer.position() + count);
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return buffer.remaining();
+    }
+}
@@ -0,0 +1,301 @@
+package com.customs;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Писатель канонической формы (Canonical XML 1.0, без комментариев) для дерева без пространств имен.
+ * Воспроизводит вывод Santuario для документа, полученного после удаления пространств имен:
+ * атрибуты сортируются по имени, текст и значения атрибутов экранируются по правилам C14N.
+ * Ответственность: только сериализация, обход дерева выполняет вызывающий код.
+ *
+ * <p>Символы кодируются в UTF-8 сразу в собственный байтовый буфер: символы ASCII без экранирования
+ * копируются по одному байту, замены берутся из таблиц, индексируемых кодом символа.
+ * Непарные суррогаты заменяются на '?', как это делает OutputStreamWriter.
+ */
+final class C14nWriter {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final byte[][] NO_ESCAPES = new byte[128][];
+    private static final byte[][] TEXT_ESCAPES = new byte[128][];
+    private static final byte[][] ATTRIBUTE_ESCAPES = new byte[128][];
+    private static final byte[][] PI_ESCAPES = new byte[128][];
+
+    static {
+        TEXT_ESCAPES['&'] = ascii("&amp;");
+        TEXT_ESCAPES['<'] = ascii("&lt;");
+        TEXT_ESCAPES['>'] = ascii("&gt;");
+        TEXT_ESCAPES['\r'] = ascii("&#xD;");
+
+        ATTRIBUTE_ESCAPES['&'] = ascii("&amp;");
+        ATTRIBUTE_ESCAPES['<'] = ascii("&lt;");
+        ATTRIBUTE_ESCAPES['"'] = ascii("&quot;");
+        ATTRIBUTE_ESCAPES['\t'] = ascii("&#x9;");
+        ATTRIBUTE_ESCAPES['\n'] = ascii("&#xA;");
+        ATTRIBUTE_ESCAPES['\r'] = ascii("&#xD;");
+
+        PI_ESCAPES['\r'] = ascii("&#xD;");
+    }
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    /**
+     * Старший суррогат в конце предыдущего фрагмента текста; младший может прийти следующим фрагментом.
+     */
+    private char pendingHighSurrogate;
+
+    /**
+     * @param out Поток, в который записываются канонические байты в UTF-8.
+     */
+    C14nWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Записывает открывающий тег. Массивы атрибутов сортируются на месте.
+     * @param name Имя элемента без префикса.
+     * @param attrNames Имена атрибутов.
+     * @param attrValues Значения атрибутов.
+     * @param attrCount Количество используемых элементов массивов.
+     * @throws IOException при ошибке записи.
+     */
+    void startElement(String name, String[] attrNames, String[] attrValues, int attrCount) throws IOException {
+        endText();
+        sortAttributes(attrNames, attrValues, attrCount);
+        writeByte('<');
+        write(name, NO_ESCAPES);
+        for (int i = 0; i < attrCount; i++) {
+            writeByte(' ');
+            write(attrNames[i], NO_ESCAPES);
+            writeByte('=');
+            writeByte('"');
+            write(attrValues[i], ATTRIBUTE_ESCAPES);
+            writeByte('"');
+        }
+        writeByte('>');
+    }
+
+    /**
+     * Записывает закрывающий тег.
+     * @param name Имя элемента без префикса.
+     * @throws IOException при ошибке записи.
+     */
+    void endElement(String name) throws IOException {
+        endText();
+        writeByte('<');
+        writeByte('/');
+        write(name, NO_ESCAPES);
+        writeByte('>');
+    }
+
+    /**
+     * Записывает текстовое содержимое (в том числе CDATA) с экранированием.
+     * Суррогатная пара может быть разделена между соседними вызовами.
+     * @throws IOException при ошибке записи.
+     */
+    void text(char[] ch, int start, int length) throws IOException {
+        int end = start + length;
+        int i = start;
+        if (pendingHighSurrogate != 0 && i < end) {
+            i = resolvePendingSurrogate(ch[i], i);
+        }
+        byte[][] escapes = TEXT_ESCAPES;
+        byte[] buf = buffer;
+        for (; i < end; i++) {
+            char c = ch[i];
+            if (c < 0x80) {
+                byte[] escape = escapes[c];
+                if (escape == null) {
+                    if (position == buf.length) {
+                        flushBuffer();
+                    }
+                    buf[position++] = (byte) c;
+                } else {
+                    writeBytes(escape);
+                }
+            } else if (Character.isHighSurrogate(c)) {
+                if (i + 1 == end) {
+                    pendingHighSurrogate = c;
+                } else if (Character.isLowSurrogate(ch[i + 1])) {
+                    writeCodePoint(Character.toCodePoint(c, ch[++i]));
+                } else {
+                    writeByte('?');
+                }
+            } else {
+                writeNonAscii(c);
+            }
+        }
+    }
+
+    /**
+     * Записывает текстовое содержимое (в том числе CDATA) с экранированием.
+     * @throws IOException при ошибке записи.
+     */
+    void text(String text) throws IOException {
+        int i = 0;
+        if (pendingHighSurrogate != 0 && !text.isEmpty()) {
+            i = resolvePendingSurrogate(text.charAt(0), 0);
+        }
+        write(text, i, TEXT_ESCAPES);
+    }
+
+    /**
+     * Записывает инструкцию обработки, расположенную внутри элемента.
+     * @param target Цель инструкции.
+     * @param data Данные инструкции, может быть null.
+     * @throws IOException при ошибке записи.
+     */
+    void processingInstruction(String target, String data) throws IOException {
+        endText();
+        writeByte('<');
+        writeByte('?');
+        write(target, NO_ESCAPES);
+        if (data != null && !data.isEmpty()) {
+            writeByte(' ');
+            write(data, PI_ESCAPES);
+        }
+        writeByte('?');
+        writeByte('>');
+    }
+
+    /**
+     * Сбрасывает буфер в целевой поток. Сам поток не закрывается.
+     * @throws IOException при ошибке записи.
+     */
+    void flush() throws IOException {
+        endText();
+        flushBuffer();
+        out.flush();
+    }
+
+    private void write(String text, byte[][] escapes) throws IOException {
+        write(text, 0, escapes);
+    }
+
+    private void write(String text, int from, byte[][] escapes) throws IOException {
+        byte[] buf = buffer;
+        for (int i = from, end = text.length(); i < end; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                byte[] escape = escapes[c];
+                if (escape == null) {
+                    if (position == buf.length) {
+                        flushBuffer();
+                    }
+                    buf[position++] = (byte) c;
+                } else {
+                    writeBytes(escape);
+                }
+            } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(text.charAt(i + 1))) {
+                writeCodePoint(Character.toCodePoint(c, text.charAt(++i)));
+            } else if (Character.isSurrogate(c)) {
+                writeByte('?');
+            } else {
+                writeNonAscii(c);
+            }
+        }
+    }
+
+    /**
+     * Завершает отложенный старший суррогат первым символом следующего фрагмента текста.
+     * @return Индекс символа, с которого продолжается запись.
+     */
+    private int resolvePendingSurrogate(char next, int index) throws IOException {
+        char high = pendingHighSurrogate;
+        pendingHighSurrogate = 0;
+        if (Character.isLowSurrogate(next)) {
+            writeCodePoint(Character.toCodePoint(high, next));
+            return index + 1;
+        }
+        writeByte('?');
+        return index;
+    }
+
+    /**
+     * Старший суррогат, за которым текст не продолжился, записывается как непарный.
+     */
+    private void endText() throws IOException {
+        if (pendingHighSurrogate != 0) {
+            pendingHighSurrogate = 0;
+            writeByte('?');
+        }
+    }
+
+    /**
+     * Кодирует символ BMP вне ASCII; суррогаты обрабатываются вызывающим кодом.
+     */
+    private void writeNonAscii(char c) throws IOException {
+        if (Character.isLowSurrogate(c)) {
+            writeByte('?');
+            return;
+        }
+        if (position + 3 > buffer.length) {
+            flushBuffer();
+        }
+        if (c < 0x800) {
+            buffer[position++] = (byte) (0xC0 | (c >> 6));
+        } else {
+            buffer[position++] = (byte) (0xE0 | (c >> 12));
+            buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+        }
+        buffer[position++] = (byte) (0x80 | (c & 0x3F));
+    }
+
+    private void writeCodePoint(int codePoint) throws IOException {
+        if (position + 4 > buffer.length) {
+            flushBuffer();
+        }
+        buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+        buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+        buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+        buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+    }
+
+    private void writeByte(int b) throws IOException {
+        if (position == buffer.length) {
+            flushBuffer();
+        }
+        buffer[position++] = (byte) b;
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        if (position + bytes.length > buffer.length) {
+            flushBuffer();
+        }
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    private void flushBuffer() throws IOException {
+        if (position > 0) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+
+    /**
+     * Сортировка вставками: у элементов обычно единицы атрибутов.
+     * Порядок совпадает с AttrCompare из Santuario для атрибутов без пространства имен (String.compareTo).
+     */
+    private static void sortAttributes(String[] names, String[] values, int count) {
+        for (int i = 1; i < count; i++) {
+            String name = names[i];
+            String value = values[i];
+            int j = i - 1;
+            while (j >= 0 && names[j].compareTo(name) > 0) {
+                names[j + 1] = names[j];
+                values[j + 1] = values[j];
+                j--;
+            }
+            names[j + 1] = name;
+            values[j + 1] = value;
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package com.customs;
+
+import javax.security.auth.x500.X500Principal;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.cert.CRL;
+import java.security.cert.CertPathBuilder;
+import java.security.cert.CertPathBuilderException;
+import java.security.cert.CertStore;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateFactory;
+import java.security.cert.CollectionCertStoreParameters;
+import java.security.cert.PKIXBuilderParameters;
+import java.security.cert.PKIXCertPathBuilderResult;
+import java.security.cert.TrustAnchor;
+import java.security.cert.X509CRL;
+import java.security.cert.X509CertSelector;
+import java.security.cert.X509Certificate;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Офлайн-проверка сертификатов ключей: построение цепочки до доверенного корня и проверка отзыва по локальным CRL.
+ * Каталог доверенных сертификатов содержит корни (самоподписанные сертификаты) и промежуточные CA
+ * в файлах {@code .pem}, {@code .crt}, {@code .cer}, {@code .der}; каталог CRL - файлы {@code .crl} и {@code .pem}.
+ * Подпись каждого CRL проверяется при загрузке, от одного издателя берется самый свежий CRL.
+ *
+ * <p>Построение цепочки (PKIX) выполняется один раз на сертификат; вердикт кешируется до ближайшего
+ * nextUpdate из CRL цепочки или конца срока действия сертификатов цепочки, что наступит раньше.
+ * Отказ (цепочка не строится, CRL нет или он устарел) кешируется не дольше {@link #FAILURE_RETRY_MILLIS}
+ * и не дольше notBefore еще не действующего сертификата.
+ * Поэтому при каждом сообщении остается поиск вердикта в хеш-таблице и сравнение времени.
+ * Когда вердикт истекает, каталоги перечитываются, если в них изменились файлы, поэтому новый CRL
+ * подхватывается без вызова {@link #reload()}.
+ * Для каждого сертификата цепочки, кроме корня, нужен действующий CRL его издателя, иначе сертификат
+ * не принимается. {@link #reload()} перечитывает оба каталога и сбрасывает вердикты.
+ * Ключи без сертификата не проверяются: им доверяют явно.
+ */
+public final class CertificateValidator {
+
+    /**
+     * Срок, после которого отказ проверяется заново.
+     */
+    static final long FAILURE_RETRY_MILLIS = 60_000;
+
+    private final Path trustAnchorDirectory;
+    private final Path crlDirectory;
+    private volatile State state;
+
+    /**
+     * Загружает доверенные сертификаты и CRL.
+     * @param trustAnchorDirectory Каталог с корневыми и промежуточными сертификатами.
+     * @param crlDirectory Каталог с CRL.
+     * @throws Exception если каталог недоступен, файл не разобран или подпись CRL не проверена.
+     */
+    public CertificateValidator(Path trustAnchorDirectory, Path crlDirectory) throws Exception {
+        this.trustAnchorDirectory = trustAnchorDirectory;
+        this.crlDirectory = crlDirectory;
+        reload();
+    }
+
+    /**
+     * Перечитывает сертификаты и CRL и атомарно заменяет состояние вместе с кешем вердиктов.
+     * @throws Exception если каталог недоступен, файл не разобран или подпись CRL не проверена;
+     *                   прежнее состояние при этом сохраняется.
+     */
+    public synchronized void reload() throws Exception {
+        state = new State(trustAnchorDirectory, crlDirectory);
+    }
+
+    /**
+     * Перечитывает каталоги, если с момента загрузки состояния в них изменился состав или время изменения файлов.
+     * @param loaded Состояние, вердикт которого истек.
+     * @return Текущее состояние.
+     * @throws Exception если новое содержимое каталогов не загружается; прежнее состояние сохраняется.
+     */
+    private synchronized State refreshIfChanged(State loaded) throws Exception {
+        if (state == loaded && !loaded.fingerprint.equals(State.fingerprint(trustAnchorDirectory, crlDirectory))) {
+            reload();
+        }
+        return state;
+    }
+
+    /**
+     * Проверяет, что сертификату ключа можно доверять в указанный момент.
+     * @param trustedKey Ключ с сертификатом или без него.
+     * @param timeMillis Момент проверки, мс от эпохи.
+     * @throws Exception если цепочка не строится, CRL отсутствует или устарел, либо сертификат цепочки отозван.
+     */
+    public void check(TrustedKey trustedKey, long timeMillis) throws Exception {
+        X509Certificate certificate = trustedKey.getCertificate();
+        if (certificate == null) {
+            return;
+        }
+        State current = state;
+        Verdict verdict = current.verdicts.get(certificate);
+        if (verdict == null || timeMillis > verdict.validUntil) {
+            if (verdict != null) {
+                current = refreshIfChanged(current);
+            }
+            verdict = current.validate(certificate, timeMillis);
+            current.verdicts.put(certificate, verdict);
+        }
+        if (verdict.failure != null) {
+            throw new Exception(verdict.failure);
+        }
+    }
+
+    private static String subject(X509Certificate certificate) {
+        return "'" + certificate.getSubjectX500Principal().getName() + "'";
+    }
+
+    private static boolean hasExtension(Path file, String... extensions) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        for (String extension : extensions) {
+            if (name.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Загруженные сертификаты и CRL с кешем вердиктов; заменяется целиком при перезагрузке.
+     */
+    private static final class State {
+        private static final String[] CERTIFICATE_EXTENSIONS = {".pem", ".crt", ".cer", ".der"};
+        private static final String[] CRL_EXTENSIONS = {".crl", ".pem"};
+
+        private final Set<TrustAnchor> anchors = new HashSet<>();
+        private final List<X509Certificate> issuers = new ArrayList<>();
+        private final CertStore intermediates;
+        private final Map<X500Principal, RevocationList> revocationLists = new HashMap<>();
+        private final Map<X509Certificate, Verdict> verdicts = new ConcurrentHashMap<>();
+        /**
+         * Имена, размеры и время изменения файлов обоих каталогов на момент загрузки.
+         */
+        private final String fingerprint;
+
+        State(Path trustAnchorDirectory, Path crlDirectory) throws Exception {
+            this.fingerprint = fingerprint(trustAnchorDirectory, crlDirectory);
+            CertificateFactory factory = CertificateFactory.getInstance("X.509");
+            List<X509Certificate> intermediateCertificates = new ArrayList<>();
+            for (Path file : list(trustAnchorDirectory, CERTIFICATE_EXTENSIONS)) {
+                for (Certificate certificate : read(file, in -> factory.generateCertificates(in))) {
+                    X509Certificate x509 = (X509Certificate) certificate;
+                    issuers.add(x509);
+                    if (x509.getSubjectX500Principal().equals(x509.getIssuerX500Principal())) {
+                        anchors.add(new TrustAnchor(x509, null));
+                    } else {
+                        intermediateCertificates.add(x509);
+                    }
+                }
+            }
+            if (anchors.isEmpty()) {
+                throw new Exception("No trust anchors found in " + trustAnchorDirectory);
+            }
+            this.intermediates = CertStore.getInstance("Collection", new CollectionCertStoreParameters(intermediateCertificates));
+
+            Map<X500Principal, X509CRL> latest = new HashMap<>();
+            for (Path file : list(crlDirectory, CRL_EXTENSIONS)) {
+                for (CRL crl : read(file, in -> factory.generateCRLs(in))) {
+                    X509CRL x509Crl = (X509CRL) crl;
+                    verifyCrl(x509Crl, file);
+                    latest.merge(x509Crl.getIssuerX500Principal(), x509Crl,
+                            (a, b) -> a.getThisUpdate().after(b.getThisUpdate()) ? a : b);
+                }
+            }
+            latest.forEach((issuer, crl) -> revocationLists.put(issuer, RevocationList.of(crl)));
+        }
+
+        private void verifyCrl(X509CRL crl, Path file) throws Exception {
+            for (X509Certificate issuer : issuers) {
+                if (issuer.getSubjectX500Principal().equals(crl.getIssuerX500Principal())) {
+                    try {
+                        crl.verify(issuer.getPublicKey());
+                        return;
+                    } catch (Exception e) {
+                        // Тот же DN у другого ключа издателя: пробуем следующий сертификат
+                    }
+                }
+            }
+            throw new Exception("CRL " + file + " is not signed by a trusted issuer " + crl.getIssuerX500Principal().getName());
+        }
+
+        /**
+         * Строит цепочку и проверяет отзыв каждого ее сертификата.
+         */
+        Verdict validate(X509Certificate certificate, long timeMillis) throws Exception {
+            X509CertSelector target = new X509CertSelector();
+            target.setCertificate(certificate);
+            PKIXBuilderParameters parameters = new PKIXBuilderParameters(anchors, target);
+            parameters.addCertStore(intermediates);
+            parameters.setRevocationEnabled(false);
+            parameters.setDate(new Date(timeMillis));
+            List<? extends Certificate> path;
+            try {
+                PKIXCertPathBuilderResult result = (PKIXCertPathBuilderResult) CertPathBuilder.getInstance("PKIX").build(parameters);
+                path = result.getCertPath().getCertificates();
+            } catch (CertPathBuilderException e) {
+                long retryAt = timeMillis + FAILURE_RETRY_MILLIS;
+                if (timeMillis < certificate.getNotBefore().getTime()) {
+                    retryAt = Math.min(retryAt, certificate.getNotBefore().getTime() - 1);
+                }
+                return Verdict.failed("Certificate " + subject(certificate) + " does not chain to a trust anchor: "
+                        + e.getMessage(), retryAt);
+            }
+
+            long validUntil = Long.MAX_VALUE;
+            for (Certificate element : path) {
+                X509Certificate pathCertificate = (X509Certificate) element;
+                validUntil = Math.min(validUntil, pathCertificate.getNotAfter().getTime());
+                X500Principal issuer = pathCertificate.getIssuerX500Principal();
+                RevocationList revocationList = revocationLists.get(issuer);
+                if (revocationList == null) {
+                    return Verdict.failed("No CRL for issuer '" + issuer.getName() + "' of certificate "
+                            + subject(pathCertificate), timeMillis + FAILURE_RETRY_MILLIS);
+                }
+                if (timeMillis > revocationList.nextUpdate()) {
+                    return Verdict.failed("CRL of issuer '" + issuer.getName() + "' is out of date since "
+                            + Instant.ofEpochMilli(revocationList.nextUpdate()), timeMillis + FAILURE_RETRY_MILLIS);
+                }
+                validUntil = Math.min(validUntil, revocationList.nextUpdate());
+                if (revocationList.isRevoked(pathCertificate.getSerialNumber())) {
+                    return Verdict.failed("Certificate " + subject(pathCertificate) + " with serial "
+                            + pathCertificate.getSerialNumber().toString(16) + " is revoked", validUntil);
+                }
+            }
+            return new Verdict(null, validUntil);
+        }
+
+        static String fingerprint(Path trustAnchorDirectory, Path crlDirectory) throws Exception {
+            StringBuilder fingerprint = new StringBuilder();
+            appendFingerprint(fingerprint, list(trustAnchorDirectory, CERTIFICATE_EXTENSIONS));
+            fingerprint.append('\n');
+            appendFingerprint(fingerprint, list(crlDirectory, CRL_EXTENSIONS));
+            return fingerprint.toString();
+        }
+
+        private static void appendFingerprint(StringBuilder fingerprint, List<Path> files) throws Exception {
+            for (Path file : files) {
+                fingerprint.append(file).append('|').append(Files.size(file)).append('|')
+                        .append(Files.getLastModifiedTime(file).toMillis()).append('\n');
+            }
+        }
+
+        private static List<Path> list(Path directory, String... extensions) throws Exception {
+            List<Path> files = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                    file -> Files.isRegularFile(file) && hasExtension(file, extensions))) {
+                stream.forEach(files::add);
+            }
+            files.sort(null);
+            return files;
+        }
+
+        private static <T> Collection<? extends T> read(Path file, Parser<T> parser) throws Exception {
+            try (InputStream in = Files.newInputStream(file)) {
+                return parser.parse(in);
+            } catch (Exception e) {
+                throw new Exception("Invalid certificate or CRL file " + file + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Разбор всех объектов файла фабрикой сертификатов.
+     */
+    private interface Parser<T> {
+        Collection<? extends T> parse(InputStream in) throws Exception;
+    }
+
+    /**
+     * Результат проверки сертификата и момент, до которого он действует.
+     */
+    private static final class Verdict {
+        final String failure;
+        final long validUntil;
+
+        Verdict(String failure, long validUntil) {
+            this.failure = failure;
+            this.validUntil = validUntil;
+        }
+
+        static Verdict failed(String failure, long validUntil) {
+            return new Verdict(failure, validUntil);
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package com.customs;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Безоконный режим: пакетная проверка файлов из командной строки.
+ * Результаты выводятся в stdout в формате JSON Lines по мере обработки порций файлов,
+ * диагностика и ошибки аргументов - в stderr.
+ * Ответственность: разбор аргументов, поиск файлов и форматирование результатов.
+ */
+final class CommandLineVerifier {
+
+    /**
+     * Количество файлов в одной порции; результаты порции выводятся сразу после ее проверки.
+     */
+    private static final int CHUNK_SIZE = 512;
+
+    static final int EXIT_ALL_VALID = 0;
+    static final int EXIT_INVALID_FOUND = 1;
+    static final int EXIT_USAGE = 2;
+    /**
+     * Проверка не выполнена целиком: ключ не читается, входной файл не найден и т. п.
+     */
+    static final int EXIT_ERROR = 3;
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: java -jar XMLSignatureValidation.jar --key <file|dir> [--workers N] [--algorithm NAME] <file|dir|glob>...",
+            "  --key        public key or certificate file (PEM, DER, PKCS#12, JKS), or a directory of them (any key may match)",
+            "  --workers    number of parallel workers (default: available processors)",
+            "  --algorithm  signature algorithm for all keys: " + algorithmNames() + " (default: by key type)",
+            "  inputs       envelope files, directories (scanned recursively) or glob patterns",
+            "Writes one JSON object per file to stdout.",
+            "Exit code: 0 all valid, 1 invalid or failed file, 2 usage error, 3 runtime error (unreadable key, missing input).");
+
+    private CommandLineVerifier() {
+    }
+
+    /**
+     * Проверяет файлы, перечисленные в аргументах командной строки.
+     * @param args Аргументы командной строки.
+     * @return Код завершения процесса.
+     */
+    static int run(String[] args) {
+        PrintStream err = System.err;
+        String key = null;
+        int workers = Runtime.getRuntime().availableProcessors();
+        SignatureAlgorithm algorithm = null;
+        List<String> inputs = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if ("--key".equals(arg)) {
+                    key = requireValue(args, ++i, arg);
+                } else if ("--workers".equals(arg)) {
+                    workers = Integer.parseInt(requireValue(args, ++i, arg));
+                    if (workers < 1) {
+                        throw new IllegalArgumentException("--workers must be positive");
+                    }
+                } else if ("--algorithm".equals(arg)) {
+                    algorithm = parseAlgorithm(requireValue(args, ++i, arg));
+                } else if ("--help".equals(arg) || "-h".equals(arg)) {
+                    err.println(USAGE);
+                    return EXIT_USAGE;
+                } else {
+                    inputs.add(arg);
+                }
+            }
+            if (key == null || inputs.isEmpty()) {
+                throw new IllegalArgumentException("--key and at least one input are required");
+            }
+        } catch (IllegalArgumentException e) {
+            err.println("Error: " + e.getMessage());
+            err.println(USAGE);
+            return EXIT_USAGE;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(workers);
+        try {
+            List<File> keyFiles = resolveKeyFiles(Paths.get(key));
+            List<Path> files = resolveInputs(inputs);
+            SignatureVerifier.Builder builder = SignatureVerifier.builder().forkJoinPool(pool);
+            if (algorithm != null) {
+                builder.signatureAlgorithm(algorithm);
+            }
+            SignatureVerifier verifier = builder.build();
+
+            Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+            boolean allValid = true;
+            for (int from = 0; from < files.size(); from += CHUNK_SIZE) {
+                List<Path> chunk = files.subList(from, Math.min(from + CHUNK_SIZE, files.size()));
+                for (VerificationResult result : verifier.verifyAll(chunk.stream(), keyFiles)) {
+                    allValid &= result.isValid();
+                    out.write(toJson(result));
+                    out.write('\n');
+                }
+                out.flush();
+            }
+            return allValid ? EXIT_ALL_VALID : EXIT_INVALID_FOUND;
+        } catch (Exception e) {
+            err.println("Error: " + e.getMessage());
+            return EXIT_ERROR;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static SignatureAlgorithm parseAlgorithm(String name) {
+        try {
+            return SignatureAlgorithm.valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown --algorithm " + name + ", expected one of " + algorithmNames());
+        }
+    }
+
+    private static String algorithmNames() {
+        return Stream.of(SignatureAlgorithm.values()).map(Enum::name).collect(Collectors.joining(", "));
+    }
+
+    private static String requireValue(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException(option + " requires a value");
+        }
+        return args[index];
+    }
+
+    /**
+     * @param key Файл ключа или каталог с файлами ключей и сертификатов (см. {@link KeyFiles}).
+     * @return Файлы ключей в порядке имен.
+     * @throws IOException если каталог не читается или ключей в нем нет.
+     */
+    private static List<File> resolveKeyFiles(Path key) throws IOException {
+        if (!Files.isDirectory(key)) {
+            return List.of(key.toFile());
+        }
+        List<File> keyFiles;
+        try (Stream<Path> entries = Files.list(key)) {
+            keyFiles = entries
+                    .filter(p -> Files.isRegularFile(p) && KeyFiles.isKeyFile(p.getFileName().toString()))
+                    .sorted()
+                    .map(Path::toFile)
+                    .collect(Collectors.toList());
+        }
+        if (keyFiles.isEmpty()) {
+            throw new IOException("No key files found in " + key);
+        }
+        return keyFiles;
+    }
+
+    /**
+     * Раскрывает аргументы в список файлов: файл берется как есть, каталог обходится рекурсивно,
+     * шаблон glob применяется к файлам под его неизменяемой частью пути.
+     * @param inputs Аргументы-входы.
+     * @return Файлы для проверки.
+     * @throws IOException если каталог не читается или путь не существует.
+     */
+    private static List<Path> resolveInputs(List<String> inputs) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (String input : inputs) {
+            if (isGlob(input)) {
+                files.addAll(expandGlob(input));
+                continue;
+            }
+            Path path = Paths.get(input);
+            if (Files.isDirectory(path)) {
+                files.addAll(walkFiles(path, p -> true));
+            } else if (Files.exists(path)) {
+                files.add(path);
+            } else {
+                throw new IOException("Input not found: " + input);
+            }
+        }
+        return files;
+    }
+
+    private static boolean isGlob(String input) {
+        return firstWildcard(input) >= 0;
+    }
+
+    private static int firstWildcard(String input) {
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            if (c == '*' || c == '?' || c == '[' || c == '{') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static List<Path> expandGlob(String pattern) throws IOException {
+        String normalized = pattern.replace(File.separatorChar, '/');
+        int firstWildcard = firstWildcard(normalized);
+        int baseEnd = normalized.lastIndexOf('/', firstWildcard);
+        Path base = baseEnd < 0 ? Paths.get("") : Paths.get(baseEnd == 0 ? "/" : normalized.substring(0, baseEnd));
+        String relative = normalized.substring(baseEnd + 1);
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + relative);
+        if (!Files.isDirectory(base)) {
+            return List.of();
+        }
+        return walkFiles(base, p -> matcher.matches(base.relativize(p)));
+    }
+
+    private static List<Path> walkFiles(Path dir, Predicate<Path> filter) throws IOException {
+        try (Stream<Path> walk = Files.walk(dir)) {
+            return walk.filter(Files::isRegularFile).filter(filter).sorted().collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Форматирует результат как одну строку JSON.
+     * @param result Результат проверки файла.
+     * @return Объект JSON без перевода строки.
+     */
+    private static String toJson(VerificationResult result) {
+        StringBuilder json = new StringBuilder(160);
+        json.append("{\"path\":");
+        appendString(json, result.getSource());
+        json.append(",\"valid\":").append(result.isValid());
+        json.append(",\"timings\":{\"parseMs\":").append(millis(result.getParseNanos()))
+                .append(",\"verifyMs\":").append(millis(result.getVerifyNanos()))
+                .append(",\"totalMs\":").append(millis(result.getElapsedNanos())).append('}');
+        json.append(",\"error\":");
+        if (result.hasError()) {
+            Exception error = result.getError();
+            appendString(json, error.getMessage() != null ? error.getMessage() : error.getClass().getName());
+        } else {
+            json.append("null");
+        }
+        return json.append('}').toString();
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1_000_000.0);
+    }
+
+    private static void appendString(StringBuilder json, String value) {
+        if (value == null) {
+            json.append("null");
+            return;
+        }
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': json.append("\\\""); break;
+                case '\\': json.append("\\\\"); break;
+                case '\n': json.append("\\n"); break;
+                case '\r': json.append("\\r"); break;
+                case '\t': json.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        json.append('"');
+    }
+}
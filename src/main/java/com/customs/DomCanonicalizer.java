@@ -0,0 +1,90 @@
+package com.customs;
+
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Канонизация дочерних элементов SOAP Body прямо по исходному DOM, без копии дерева.
+ * Правило удаления пространств имен применяется на лету: элементы пишутся по localName,
+ * атрибуты xmlns* и атрибуты с пространством имен отбрасываются. Вывод побайтно совпадает
+ * с канонизацией Santuario (C14N без комментариев) документа из
+ * {@link XmlSignatureProcessor#removeAllNamespaces}.
+ * Ожидается документ, разобранный с учетом пространств имен и с раскрытыми ссылками на сущности.
+ */
+final class DomCanonicalizer {
+
+    private DomCanonicalizer() {
+    }
+
+    /**
+     * Канонизирует каждый дочерний элемент Body как отдельный документ и записывает результат подряд.
+     * @param body Элемент SOAP Body.
+     * @param out Поток для канонических байтов; не закрывается.
+     * @throws IOException при ошибке записи.
+     */
+    static void canonicalizeChildren(Node body, OutputStream out) throws IOException {
+        C14nWriter writer = new C14nWriter(out);
+        String[] attrNames = new String[8];
+        String[] attrValues = new String[8];
+        for (Node child = body.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() == Node.ELEMENT_NODE) {
+                writeSubtree(child, writer, attrNames, attrValues);
+            }
+        }
+        writer.flush();
+    }
+
+    /**
+     * Итеративный обход поддерева по firstChild/nextSibling/parentNode, без рекурсии и без стека имен.
+     */
+    private static void writeSubtree(Node root, C14nWriter writer, String[] attrNames, String[] attrValues) throws IOException {
+        Node node = root;
+        while (node != null) {
+            switch (node.getNodeType()) {
+                case Node.ELEMENT_NODE: {
+                    NamedNodeMap attributes = node.getAttributes();
+                    int total = attributes.getLength();
+                    if (total > attrNames.length) {
+                        attrNames = new String[total];
+                        attrValues = new String[total];
+                    }
+                    int count = 0;
+                    for (int i = 0; i < total; i++) {
+                        Node attr = attributes.item(i);
+                        if (attr.getNamespaceURI() == null && !attr.getNodeName().startsWith("xmlns")) {
+                            attrNames[count] = attr.getLocalName();
+                            attrValues[count] = attr.getNodeValue();
+                            count++;
+                        }
+                    }
+                    writer.startElement(node.getLocalName(), attrNames, attrValues, count);
+                    Node first = node.getFirstChild();
+                    if (first != null) {
+                        node = first;
+                        continue;
+                    }
+                    writer.endElement(node.getLocalName());
+                    break;
+                }
+                case Node.TEXT_NODE:
+                case Node.CDATA_SECTION_NODE:
+                    writer.text(node.getNodeValue());
+                    break;
+                case Node.PROCESSING_INSTRUCTION_NODE:
+                    writer.processingInstruction(node.getNodeName(), node.getNodeValue());
+                    break;
+                default:
+                    // Комментарии в каноническую форму не попадают
+                    break;
+            }
+            while (node != root && node.getNextSibling() == null) {
+                node = node.getParentNode();
+                writer.endElement(node.getLocalName());
+            }
+            node = node == root ? null : node.getNextSibling();
+        }
+    }
+}
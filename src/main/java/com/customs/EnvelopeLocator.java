@@ -0,0 +1,89 @@
+package com.customs;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.util.Objects;
+
+/**
+ * Поиск элементов SOAP-конверта прямым обходом дочерних узлов вместо вычисления XPath.
+ * Результаты совпадают с выражениями {@code /soap:Envelope/soap:Body} и
+ * {@code /soap:Envelope/soap:Header/<имя подписи>}: берется первый подходящий элемент
+ * в порядке документа, элементы Header (подпись, отправитель) ищутся без пространства имен.
+ * Экземпляр неизменяем и может использоваться из любых потоков.
+ */
+final class EnvelopeLocator {
+
+    private final String soapNamespace;
+    private final String signatureElementName;
+
+    /**
+     * @param soapNamespace Пространство имен SOAP-конверта.
+     * @param signatureElementName Локальное имя элемента подписи в SOAP Header.
+     */
+    EnvelopeLocator(String soapNamespace, String signatureElementName) {
+        this.soapNamespace = soapNamespace;
+        this.signatureElementName = signatureElementName;
+    }
+
+    /**
+     * @param doc Разобранный SOAP-документ.
+     * @return Первый элемент Body конверта или null, если его нет.
+     */
+    Element body(Document doc) {
+        Element envelope = envelope(doc);
+        return envelope == null ? null : firstChild(envelope, soapNamespace, "Body");
+    }
+
+    /**
+     * Ищет элемент подписи во всех Header конверта по порядку.
+     * @param doc Разобранный SOAP-документ.
+     * @return Первый элемент подписи или null, если его нет.
+     */
+    Element signature(Document doc) {
+        return headerChild(doc, signatureElementName);
+    }
+
+    /**
+     * Ищет элемент без пространства имен во всех Header конверта по порядку.
+     * @param doc Разобранный SOAP-документ.
+     * @param localName Локальное имя элемента.
+     * @return Первый найденный элемент или null, если его нет.
+     */
+    Element headerChild(Document doc, String localName) {
+        Element envelope = envelope(doc);
+        if (envelope == null) {
+            return null;
+        }
+        for (Node header = envelope.getFirstChild(); header != null; header = header.getNextSibling()) {
+            if (matches(header, soapNamespace, "Header")) {
+                Element child = firstChild(header, null, localName);
+                if (child != null) {
+                    return child;
+                }
+            }
+        }
+        return null;
+    }
+
+    private Element envelope(Document doc) {
+        Element root = doc.getDocumentElement();
+        return root != null && matches(root, soapNamespace, "Envelope") ? root : null;
+    }
+
+    private static Element firstChild(Node parent, String namespace, String localName) {
+        for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (matches(child, namespace, localName)) {
+                return (Element) child;
+            }
+        }
+        return null;
+    }
+
+    private static boolean matches(Node node, String namespace, String localName) {
+        return node.getNodeType() == Node.ELEMENT_NODE
+                && localName.equals(node.getLocalName())
+                && Objects.equals(namespace, node.getNamespaceURI());
+    }
+}
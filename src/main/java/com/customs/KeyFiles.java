@@ -0,0 +1,139 @@
+package com.customs;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Загрузка ключей проверки из файлов по расширению:
+ * <ul>
+ *     <li>{@code .pem} - публичный ключ SPKI ({@code BEGIN PUBLIC KEY}) или сертификаты ({@code BEGIN CERTIFICATE});</li>
+ *     <li>{@code .crt}, {@code .cer}, {@code .der} - сертификаты X.509 в PEM или DER;</li>
+ *     <li>{@code .p12}, {@code .pfx} - хранилище PKCS#12, {@code .jks} - хранилище JKS.</li>
+ * </ul>
+ * Из файла с цепочкой берутся только сертификаты конечных субъектов (не CA); если в файле одни
+ * сертификаты CA, берется первый. Из хранилища берутся сертификаты всех записей в порядке псевдонимов.
+ */
+final class KeyFiles {
+
+    private static final String PUBLIC_KEY_HEADER = "-----BEGIN PUBLIC KEY-----";
+
+    private KeyFiles() {
+    }
+
+    /**
+     * @param fileName Имя файла.
+     * @return true, если расширение файла соответствует поддерживаемому формату.
+     */
+    static boolean isKeyFile(String fileName) {
+        return type(fileName) != null;
+    }
+
+    /**
+     * Загружает ключи из файла.
+     * @param file Файл ключа, сертификата или хранилища.
+     * @param keyStorePassword Пароль хранилища PKCS#12 или JKS; null - без проверки целостности.
+     * @return Ключи файла, хотя бы один.
+     * @throws Exception если формат не поддерживается, файл недоступен или не содержит ключей;
+     *                   сообщение содержит путь к файлу.
+     */
+    static List<TrustedKey> load(Path file, char[] keyStorePassword) throws Exception {
+        String type = type(file.getFileName().toString());
+        if (type == null) {
+            throw new Exception("Unsupported key file type: " + file);
+        }
+        List<TrustedKey> keys;
+        try {
+            keys = "PKCS12".equals(type) || "JKS".equals(type)
+                    ? loadKeyStore(file, type, keyStorePassword)
+                    : loadKeyOrCertificates(file);
+        } catch (Exception e) {
+            throw new Exception("Invalid key file " + file + ": " + e.getMessage(), e);
+        }
+        if (keys.isEmpty()) {
+            throw new Exception("No public keys found in " + file);
+        }
+        return keys;
+    }
+
+    /**
+     * Загружает единственный ключ из файла, как ожидают методы проверки с одним файлом ключа.
+     * @param file Файл ключа, сертификата или хранилища.
+     * @param keyStorePassword Пароль хранилища PKCS#12 или JKS; null - без проверки целостности.
+     * @return Ключ файла.
+     * @throws Exception если файл не содержит ровно один ключ.
+     */
+    static TrustedKey loadSingle(Path file, char[] keyStorePassword) throws Exception {
+        List<TrustedKey> keys = load(file, keyStorePassword);
+        if (keys.size() != 1) {
+            throw new Exception("Expected one public key in " + file + ", found " + keys.size());
+        }
+        return keys.get(0);
+    }
+
+    private static String type(String fileName) {
+        String name = fileName.toLowerCase(Locale.ROOT);
+        if (name.endsWith(".pem") || name.endsWith(".crt") || name.endsWith(".cer") || name.endsWith(".der")) {
+            return "X.509";
+        }
+        if (name.endsWith(".p12") || name.endsWith(".pfx")) {
+            return "PKCS12";
+        }
+        if (name.endsWith(".jks")) {
+            return "JKS";
+        }
+        return null;
+    }
+
+    private static List<TrustedKey> loadKeyOrCertificates(Path file) throws Exception {
+        byte[] content = Files.readAllBytes(file);
+        if (new String(content, StandardCharsets.US_ASCII).contains(PUBLIC_KEY_HEADER)) {
+            return List.of(TrustedKey.of(XmlSignatureProcessor.loadPublicKeyFromPem(file.toFile())));
+        }
+        Collection<? extends Certificate> certificates = CertificateFactory.getInstance("X.509")
+                .generateCertificates(new ByteArrayInputStream(content));
+        List<TrustedKey> endEntities = new ArrayList<>(1);
+        TrustedKey first = null;
+        for (Certificate certificate : certificates) {
+            TrustedKey key = TrustedKey.of((X509Certificate) certificate);
+            if (first == null) {
+                first = key;
+            }
+            if (((X509Certificate) certificate).getBasicConstraints() < 0) {
+                endEntities.add(key);
+            }
+        }
+        if (endEntities.isEmpty() && first != null) {
+            endEntities.add(first);
+        }
+        return endEntities;
+    }
+
+    private static List<TrustedKey> loadKeyStore(Path file, String type, char[] password) throws Exception {
+        KeyStore keyStore = KeyStore.getInstance(type);
+        try (InputStream in = Files.newInputStream(file)) {
+            keyStore.load(in, password);
+        }
+        List<String> aliases = Collections.list(keyStore.aliases());
+        Collections.sort(aliases);
+        List<TrustedKey> keys = new ArrayList<>(aliases.size());
+        for (String alias : aliases) {
+            Certificate certificate = keyStore.getCertificate(alias);
+            if (certificate instanceof X509Certificate) {
+                keys.add(TrustedKey.of((X509Certificate) certificate));
+            }
+        }
+        return keys;
+    }
+}
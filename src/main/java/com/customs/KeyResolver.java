@@ -0,0 +1,21 @@
+package com.customs;
+
+import java.util.List;
+
+/**
+ * Выбор ключей проверки по отправителю сообщения.
+ * Отправитель берется из элемента SOAP Header, заданного в {@link SignatureVerifier.Builder#senderElementName(String)},
+ * поэтому один верификатор обслуживает всех контрагентов.
+ * Реализация вызывается из рабочих потоков для каждого сообщения и должна быть потокобезопасной и быстрой.
+ * Срок действия и доверие к сертификатам проверяет верификатор, реализация только находит кандидатов.
+ */
+@FunctionalInterface
+public interface KeyResolver {
+
+    /**
+     * @param sender Значение элемента отправителя из SOAP Header, без начальных и конечных пробелов.
+     * @return Ключи-кандидаты в порядке перебора (несколько при смене ключа); пустой список, если отправитель неизвестен.
+     * @throws Exception если ключи получить не удалось.
+     */
+    List<TrustedKey> resolve(String sender) throws Exception;
+}
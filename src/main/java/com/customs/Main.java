@@ -1,17 +1,38 @@
 package com.customs;
 
+import org.w3c.dom.Document;
+
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.io.File;
+import java.security.PublicKey;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Главный класс приложения для Swing UI.
- * Ответственность: создание и управление графическим интерфейсом.
+ * Ответственность: создание и управление графическим интерфейсом; безоконный режим делегируется {@link CommandLineVerifier}.
  */
 public class Main {
 
+    /**
+     * Верификатор, общий для всех проверок из окна; хранит кеш ключей между нажатиями кнопки.
+     */
+    private static final SignatureVerifier VERIFIER = SignatureVerifier.builder().build();
+
+    /**
+     * Без аргументов запускает графический интерфейс; с аргументами (или без дисплея)
+     * работает в безоконном режиме пакетной проверки, см. {@link CommandLineVerifier}.
+     * @param args Аргументы командной строки.
+     */
     public static void main(String[] args) {
+        if (args.length > 0 || GraphicsEnvironment.isHeadless()) {
+            System.exit(CommandLineVerifier.run(args));
+        }
         SwingUtilities.invokeLater(Main::createAndShowGUI);
     }
 
@@ -33,8 +54,14 @@ public class Main {
         certPathField.setEditable(false);
 
         JButton validateButton = new JButton("Validate Signature");
+        JButton cancelButton = new JButton("Cancel");
+        cancelButton.setEnabled(false);
+        JProgressBar progressBar = new JProgressBar(0, 100);
+        progressBar.setStringPainted(true);
+        progressBar.setString("Idle");
         JTextArea resultArea = new JTextArea();
         resultArea.setEditable(false);
+        ValidationWorker[] currentWorker = new ValidationWorker[1];
 
         chooseCertButton.addActionListener((ActionEvent e) -> {
             JFileChooser fileChooser = new JFileChooser();
@@ -46,24 +73,27 @@ public class Main {
         });
 
         validateButton.addActionListener((ActionEvent e) -> {
-            try {
-                String fullSoapXml = xmlInput.getText();
-
-                if (certPathField.getText().isEmpty()) {
-                    throw new IllegalArgumentException("Please choose a public key PEM file.");
-                }
-                File publicKeyFile = new File(certPathField.getText());
+            if (certPathField.getText().isEmpty()) {
+                resultArea.setText("Error: Please choose a public key PEM file.");
+                resultArea.setBackground(Color.RED);
+                return;
+            }
+            File publicKeyFile = new File(certPathField.getText());
 
-                // Извлечение подписи из XML и валидация
-                String signatureBase64 = XmlSignatureProcessor.extractSignatureBase64(fullSoapXml);
-                boolean isValid = XmlSignatureProcessor.verifySignature(fullSoapXml, signatureBase64, publicKeyFile);
+            // Разбор, канонизация и проверка выполняются вне EDT, окно остается отзывчивым
+            ValidationWorker worker = new ValidationWorker(xmlInput.getText(), publicKeyFile,
+                    resultArea, progressBar, validateButton, cancelButton);
+            currentWorker[0] = worker;
+            validateButton.setEnabled(false);
+            cancelButton.setEnabled(true);
+            resultArea.setText("Validating...");
+            resultArea.setBackground(UIManager.getColor("TextArea.background"));
+            worker.execute();
+        });
 
-                resultArea.setText("Signature is valid: " + isValid);
-                resultArea.setBackground(isValid ? new Color(144, 238, 144) : new Color(255, 182, 193)); // LightGreen/Pink
-            } catch (Exception ex) {
-                resultArea.setText("Error: " + ex.getMessage());
-                resultArea.setBackground(Color.RED);
-                ex.printStackTrace();
+        cancelButton.addActionListener((ActionEvent e) -> {
+            if (currentWorker[0] != null) {
+                currentWorker[0].cancel(true);
             }
         });
 
@@ -74,6 +104,8 @@ public class Main {
 
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
         buttonPanel.add(validateButton);
+        buttonPanel.add(cancelButton);
+        buttonPanel.add(progressBar);
 
         frame.getContentPane().setLayout(new BorderLayout(10, 10));
         frame.getContentPane().add(topPanel, BorderLayout.NORTH);
@@ -86,4 +118,158 @@ public class Main {
 
         frame.setVisible(true);
     }
+
+    /**
+     * Фоновая проверка подписи с отображением текущей стадии и времени каждой стадии.
+     * Стадии выполняются по очереди; отмена проверяется между стадиями,
+     * результат отмененной проверки не отображается.
+     * SwingWorker вызывает done() сразу при отмене, пока фоновый поток еще выполняет текущую стадию,
+     * поэтому кнопка проверки включается только после фактического выхода из doInBackground.
+     */
+    private static final class ValidationWorker extends SwingWorker<Boolean, String> {
+
+        private static final int STAGE_COUNT = 5;
+
+        private final String fullSoapXml;
+        private final File publicKeyFile;
+        private final JTextArea resultArea;
+        private final JProgressBar progressBar;
+        private final JButton validateButton;
+        private final JButton cancelButton;
+        private final Map<String, Long> stageNanos = new LinkedHashMap<>();
+        private int completedStages;
+        private long stageStart;
+        /**
+         * doInBackground завершился; читается и пишется только в EDT.
+         */
+        private boolean backgroundFinished;
+
+        ValidationWorker(String fullSoapXml, File publicKeyFile, JTextArea resultArea, JProgressBar progressBar,
+                         JButton validateButton, JButton cancelButton) {
+            this.fullSoapXml = fullSoapXml;
+            this.publicKeyFile = publicKeyFile;
+            this.resultArea = resultArea;
+            this.progressBar = progressBar;
+            this.validateButton = validateButton;
+            this.cancelButton = cancelButton;
+            addPropertyChangeListener(event -> {
+                if ("progress".equals(event.getPropertyName())) {
+                    progressBar.setValue((Integer) event.getNewValue());
+                }
+            });
+        }
+
+        @Override
+        protected Boolean doInBackground() throws Exception {
+            try {
+                return runStages();
+            } finally {
+                SwingUtilities.invokeLater(this::backgroundFinished);
+            }
+        }
+
+        private Boolean runStages() throws Exception {
+            beginStage("Parse");
+            Document doc = VERIFIER.parse(fullSoapXml);
+            if (endStage("Parse")) {
+                return null;
+            }
+
+            beginStage("Signature lookup");
+            String signatureBase64 = VERIFIER.extractSignatureBase64(doc);
+            if (endStage("Signature lookup")) {
+                return null;
+            }
+
+            beginStage("Key load");
+            PublicKey publicKey = VERIFIER.loadPublicKey(publicKeyFile);
+            if (endStage("Key load")) {
+                return null;
+            }
+
+            beginStage("Canonicalization");
+            byte[] canonicalBytes = VERIFIER.canonicalizeSoapBody(doc);
+            if (endStage("Canonicalization")) {
+                return null;
+            }
+
+            beginStage("Verification");
+            boolean isValid = VERIFIER.verifySignature(canonicalBytes, signatureBase64, publicKey);
+            endStage("Verification");
+            return isValid;
+        }
+
+        @Override
+        protected void process(List<String> stages) {
+            progressBar.setString(stages.get(stages.size() - 1) + "...");
+        }
+
+        /**
+         * Вызывается в EDT после выхода из doInBackground, в том числе отмененного.
+         */
+        private void backgroundFinished() {
+            backgroundFinished = true;
+            validateButton.setEnabled(true);
+            if (isCancelled()) {
+                showCancelled();
+            }
+        }
+
+        @Override
+        protected void done() {
+            cancelButton.setEnabled(false);
+            if (isCancelled()) {
+                if (backgroundFinished) {
+                    showCancelled();
+                } else {
+                    progressBar.setString("Cancelling...");
+                    resultArea.setText("Cancelling validation...");
+                }
+                return;
+            }
+            progressBar.setString("Done");
+            try {
+                boolean isValid = get();
+                resultArea.setText("Signature is valid: " + isValid + "\n\n" + formatTimings());
+                resultArea.setBackground(isValid ? new Color(144, 238, 144) : new Color(255, 182, 193)); // LightGreen/Pink
+            } catch (InterruptedException | ExecutionException ex) {
+                Throwable cause = ex instanceof ExecutionException ? ex.getCause() : ex;
+                resultArea.setText("Error: " + cause.getMessage() + "\n\n" + formatTimings());
+                resultArea.setBackground(Color.RED);
+                cause.printStackTrace();
+            }
+        }
+
+        private void showCancelled() {
+            progressBar.setValue(0);
+            progressBar.setString("Cancelled");
+            resultArea.setText("Validation cancelled.");
+        }
+
+        private void beginStage(String stage) {
+            publish(stage);
+            stageStart = System.nanoTime();
+        }
+
+        /**
+         * Запоминает время стадии и обновляет прогресс.
+         * @return true, если проверка отменена и следующие стадии выполнять не нужно.
+         */
+        private boolean endStage(String stage) {
+            stageNanos.put(stage, System.nanoTime() - stageStart);
+            setProgress(++completedStages * 100 / STAGE_COUNT);
+            return isCancelled();
+        }
+
+        private String formatTimings() {
+            StringBuilder text = new StringBuilder("Stage timings:\n");
+            long total = 0;
+            for (Map.Entry<String, Long> stage : stageNanos.entrySet()) {
+                total += stage.getValue();
+                text.append(String.format(Locale.ROOT, "  %-18s %10.2f ms\n", stage.getKey(), stage.getValue() / 1_000_000.0));
+            }
+            text.append(String.format(Locale.ROOT, "  %-18s %10.2f ms\n", "Total", total / 1_000_000.0));
+            return text.toString();
+        }
+    }
 }
@@ -0,0 +1,84 @@
+package com.customs;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * InputStream поверх файла, отображенного в память окнами фиксированного размера.
+ * Содержимое файла не копируется в кучу; одно отображение ограничено 2 ГБ,
+ * поэтому файлы большего размера читаются последовательными окнами.
+ * Отображенное окно освобождается сборщиком мусора после перехода к следующему.
+ */
+final class MappedFileInputStream extends InputStream {
+
+    /**
+     * Размер одного отображаемого окна.
+     */
+    static final long WINDOW_SIZE = 256L * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final long size;
+    private long windowEnd;
+    private MappedByteBuffer window;
+
+    /**
+     * Открывает файл только для чтения.
+     * @param path Путь к файлу.
+     * @throws IOException если файл не удалось открыть.
+     */
+    MappedFileInputStream(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.size = channel.size();
+    }
+
+    /**
+     * Отображает следующее окно, если текущее дочитано.
+     * @return false, если файл прочитан полностью.
+     */
+    private boolean ensureWindow() throws IOException {
+        if (window != null && window.hasRemaining()) {
+            return true;
+        }
+        if (windowEnd >= size) {
+            return false;
+        }
+        long length = Math.min(WINDOW_SIZE, size - windowEnd);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, windowEnd, length);
+        windowEnd += length;
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        return ensureWindow() ? window.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!ensureWindow()) {
+            return -1;
+        }
+        int count = Math.min(len, window.remaining());
+        window.get(b, off, count);
+        return count;
+    }
+
+    @Override
+    public int available() {
+        long remaining = size - windowEnd + (window != null ? window.remaining() : 0);
+        return (int) Math.min(Integer.MAX_VALUE, remaining);
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+}
@@ -0,0 +1,485 @@
+package com.customs;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.PublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Дешевая проверка необходимых условий по байтам сообщения до полного разбора.
+ * Лексер распознает только теги, комментарии, CDATA и инструкции обработки, отслеживает глубину
+ * и останавливается, как только найдены Body и элемент подписи (обычно сразу после Header).
+ *
+ * <p>Отклоняется только то, что полный путь тоже не признал бы действительным: корневой элемент
+ * не Envelope, в Header нет непустого элемента подписи, в Envelope нет Body, длина подписи
+ * не равна длине модуля RSA (подпись PKCS#1 и PSS всегда занимает ровно столько байтов).
+ * Элементы сопоставляются так же, как в {@link EnvelopeLocator}: пространства имен Envelope, Header, Body
+ * и элемента подписи вычисляются по объявлениям xmlns первых трех уровней, а подписью считается
+ * первый подходящий элемент в порядке документа; неподходящие элементы пропускаются.
+ * Если вывод сделать нельзя (DOCTYPE, кодировка, несовместимая с ASCII, неожиданный синтаксис,
+ * необъявленный префикс, неизвестное пространство имен конверта), проверка молча пропускается
+ * и решение принимает полный разбор.
+ * Экземпляр неизменяем и может использоваться из нескольких потоков.
+ */
+final class MessagePreScreen {
+
+    /**
+     * Глубина, до которой отслеживаются объявления пространств имен: Envelope, Header и элемент подписи.
+     */
+    private static final int TRACKED_DEPTH = 3;
+    /**
+     * Результаты разрешения префикса, отличные от номера объявления.
+     */
+    private static final int NO_NAMESPACE = -1;
+    private static final int UNBOUND = -2;
+
+    private final Set<String> soapNamespaces;
+    private final byte[] signatureName;
+
+    /**
+     * @param soapNamespaces Допустимые пространства имен конверта.
+     * @param signatureElementName Локальное имя элемента подписи в Header (ASCII, без префикса).
+     */
+    MessagePreScreen(Set<String> soapNamespaces, String signatureElementName) {
+        this.soapNamespaces = soapNamespaces;
+        this.signatureName = signatureElementName.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Проверяет оставшиеся байты буфера; позиция буфера не меняется.
+     * @param message Байты SOAP-сообщения.
+     * @param publicKey Ключ, которым будет проверяться подпись.
+     * @throws VerificationException если нарушено необходимое условие.
+     */
+    void check(ByteBuffer message, PublicKey publicKey) throws VerificationException {
+        new Scan(message, publicKey).run();
+    }
+
+    /**
+     * Состояние одного прохода по сообщению.
+     */
+    private final class Scan {
+
+        private final ByteBuffer buf;
+        private final int limit;
+        private final PublicKey publicKey;
+        private int pos;
+        private int depth;
+        private boolean inHeader;
+        private boolean bodyFound;
+        private boolean signatureFound;
+        private String envelopeNamespace;
+        /**
+         * Объявления пространств имен элементов первых уровней: префикс ("" для xmlns) и URI.
+         */
+        private String[] bindingPrefixes = new String[4];
+        private String[] bindingUris = new String[4];
+        private int bindingCount;
+        /**
+         * Количество объявлений до открытия элемента соответствующей глубины.
+         */
+        private final int[] bindingMarks = new int[TRACKED_DEPTH + 1];
+
+        Scan(ByteBuffer message, PublicKey publicKey) {
+            this.buf = message;
+            this.pos = message.position();
+            this.limit = message.limit();
+            this.publicKey = publicKey;
+        }
+
+        void run() throws VerificationException {
+            if (!asciiCompatible()) {
+                return;
+            }
+            while (true) {
+                int lt = indexOf('<', pos);
+                if (lt < 0 || lt + 1 >= limit) {
+                    // Документ оборвался до закрытия корня: решение за парсером
+                    return;
+                }
+                byte next = buf.get(lt + 1);
+                if (next == '?') {
+                    if ((pos = skipPast(lt + 2, "?>")) < 0) {
+                        return;
+                    }
+                } else if (next == '!') {
+                    if (startsWith(lt, "<!--")) {
+                        pos = skipPast(lt + 4, "-->");
+                    } else if (startsWith(lt, "<![CDATA[")) {
+                        pos = skipPast(lt + 9, "]]>");
+                    } else {
+                        // DOCTYPE: сущности могут раскрываться в разметку
+                        return;
+                    }
+                    if (pos < 0) {
+                        return;
+                    }
+                } else if (next == '/') {
+                    int gt = indexOf('>', lt + 2);
+                    if (gt < 0 || depth == 0) {
+                        // Закрывающий тег до корня: документ не правильно построен, ошибку сообщит парсер
+                        return;
+                    }
+                    pos = gt + 1;
+                    if (depth == 2) {
+                        inHeader = false;
+                    }
+                    closeElement();
+                    if (--depth == 0) {
+                        break;
+                    }
+                } else if (!startTag(lt)) {
+                    return;
+                }
+                if (bodyFound && signatureFound) {
+                    return;
+                }
+            }
+            if (!signatureFound) {
+                throw new VerificationException(VerificationException.Reason.SIGNATURE_MISSING,
+                        "Pre-screen: no signature element in SOAP Header");
+            }
+            if (!bodyFound) {
+                throw new VerificationException(VerificationException.Reason.BODY_MISSING,
+                        "Pre-screen: no Body element in SOAP Envelope");
+            }
+        }
+
+        /**
+         * Разбирает открывающий тег, начинающийся в позиции lt.
+         * @return false, если тег не удалось разобрать или пространство имен элемента не определить.
+         */
+        private boolean startTag(int lt) throws VerificationException {
+            int nameStart = lt + 1;
+            int nameEnd = nameStart;
+            while (nameEnd < limit && !isNameEnd(buf.get(nameEnd))) {
+                nameEnd++;
+            }
+            int gt = tagEnd(nameEnd);
+            if (gt < 0 || nameEnd == nameStart) {
+                return false;
+            }
+            boolean empty = buf.get(gt - 1) == '/';
+            pos = gt + 1;
+            depth++;
+            if (depth > TRACKED_DEPTH) {
+                if (empty) {
+                    depth--;
+                }
+                return true;
+            }
+            int colon = -1;
+            for (int i = nameStart; i < nameEnd; i++) {
+                if (buf.get(i) == ':') {
+                    colon = i;
+                }
+            }
+            int localStart = colon < 0 ? nameStart : colon + 1;
+            bindingMarks[depth] = bindingCount;
+            if (!readNamespaceDeclarations(nameEnd, empty ? gt - 1 : gt)) {
+                return false;
+            }
+            int namespace = resolve(nameStart, colon);
+            if (namespace == UNBOUND) {
+                return false;
+            }
+            String uri = namespace == NO_NAMESPACE ? null : bindingUris[namespace];
+            if (depth == 1) {
+                if (!regionEquals(localStart, nameEnd, "Envelope")) {
+                    throw new VerificationException(VerificationException.Reason.ENVELOPE_MISSING,
+                            "Pre-screen: root element is not a SOAP Envelope");
+                }
+                if (uri == null || !soapNamespaces.contains(uri)) {
+                    return false;
+                }
+                envelopeNamespace = uri;
+            } else if (depth == 2) {
+                if (envelopeNamespace.equals(uri)) {
+                    if (regionEquals(localStart, nameEnd, "Header")) {
+                        inHeader = !empty;
+                    } else if (regionEquals(localStart, nameEnd, "Body")) {
+                        bodyFound = true;
+                    }
+                }
+            } else if (inHeader && !signatureFound && uri == null && regionEquals(localStart, nameEnd, signatureName)) {
+                signatureFound = true;
+                checkSignatureContent(empty ? -1 : pos);
+            }
+            if (empty) {
+                closeElement();
+                depth--;
+            }
+            return true;
+        }
+
+        /**
+         * Снимает объявления пространств имен закрываемого элемента текущей глубины.
+         */
+        private void closeElement() {
+            if (depth <= TRACKED_DEPTH) {
+                bindingCount = bindingMarks[depth];
+            }
+        }
+
+        /**
+         * Читает атрибуты тега и запоминает объявления xmlns и xmlns:префикс.
+         * @param from Позиция после имени элемента.
+         * @param to Позиция '>' или '/' пустого элемента.
+         * @return false, если атрибуты не удалось разобрать или значение объявления нельзя взять как есть.
+         */
+        private boolean readNamespaceDeclarations(int from, int to) {
+            int i = from;
+            while (true) {
+                while (i < to && isWhitespace(buf.get(i))) {
+                    i++;
+                }
+                if (i >= to) {
+                    return true;
+                }
+                int nameStart = i;
+                while (i < to && buf.get(i) != '=' && !isWhitespace(buf.get(i))) {
+                    i++;
+                }
+                int nameEnd = i;
+                while (i < to && isWhitespace(buf.get(i))) {
+                    i++;
+                }
+                if (i >= to || buf.get(i) != '=') {
+                    return false;
+                }
+                i++;
+                while (i < to && isWhitespace(buf.get(i))) {
+                    i++;
+                }
+                if (i >= to || (buf.get(i) != '"' && buf.get(i) != '\'')) {
+                    return false;
+                }
+                byte quote = buf.get(i);
+                int valueStart = ++i;
+                while (i < to && buf.get(i) != quote) {
+                    i++;
+                }
+                if (i >= to) {
+                    return false;
+                }
+                int valueEnd = i++;
+                boolean defaultNamespace = regionEquals(nameStart, nameEnd, "xmlns");
+                if (defaultNamespace || (nameEnd - nameStart > 6 && startsWith(nameStart, "xmlns:"))) {
+                    for (int j = valueStart; j < valueEnd; j++) {
+                        byte b = buf.get(j);
+                        if (b == '&' || b < 0x20) {
+                            // Ссылки на символы и не-ASCII: значение URI без декодирования не известно
+                            return false;
+                        }
+                    }
+                    if (!defaultNamespace && valueStart == valueEnd) {
+                        return false;
+                    }
+                    bind(defaultNamespace ? "" : string(nameStart + 6, nameEnd), string(valueStart, valueEnd));
+                }
+            }
+        }
+
+        private void bind(String prefix, String uri) {
+            if (bindingCount == bindingPrefixes.length) {
+                bindingPrefixes = Arrays.copyOf(bindingPrefixes, bindingCount * 2);
+                bindingUris = Arrays.copyOf(bindingUris, bindingCount * 2);
+            }
+            bindingPrefixes[bindingCount] = prefix;
+            bindingUris[bindingCount] = uri;
+            bindingCount++;
+        }
+
+        /**
+         * @param nameStart Начало имени элемента.
+         * @param colon Позиция двоеточия в имени или -1.
+         * @return Номер действующего объявления, {@link #NO_NAMESPACE} или {@link #UNBOUND}.
+         */
+        private int resolve(int nameStart, int colon) {
+            for (int i = bindingCount - 1; i >= 0; i--) {
+                String prefix = bindingPrefixes[i];
+                if (colon < 0 ? prefix.isEmpty() : regionEquals(nameStart, colon, prefix)) {
+                    return colon < 0 && bindingUris[i].isEmpty() ? NO_NAMESPACE : i;
+                }
+            }
+            return colon < 0 ? NO_NAMESPACE : UNBOUND;
+        }
+
+        /**
+         * Проверяет текст первого элемента подписи, если он состоит только из символов Base64.
+         * Содержимое с разметкой или ссылками на символы пропускается: его текст без разбора неизвестен.
+         * @param contentStart Начало содержимого или -1 для пустого элемента.
+         */
+        private void checkSignatureContent(int contentStart) throws VerificationException {
+            int contentEnd = contentStart < 0 ? contentStart : indexOf('<', contentStart);
+            if (contentStart >= 0 && (contentEnd < 0 || contentEnd + 1 >= limit || buf.get(contentEnd + 1) != '/')) {
+                return;
+            }
+            int base64 = 0;
+            int padding = 0;
+            boolean inner = false;
+            for (int i = Math.max(contentStart, 0); i < contentEnd; i++) {
+                byte b = buf.get(i);
+                if (isWhitespace(b)) {
+                    inner |= base64 > 0;
+                    continue;
+                }
+                if (inner || !isBase64(b) || (padding > 0 && b != '=')) {
+                    // Пробелы внутри, '&' и прочее: длину без декодирования не определить
+                    return;
+                }
+                base64++;
+                if (b == '=') {
+                    padding++;
+                }
+            }
+            if (base64 == 0) {
+                throw new VerificationException(VerificationException.Reason.SIGNATURE_MISSING,
+                        "Pre-screen: signature element in SOAP Header is empty");
+            }
+            int data = base64 - padding;
+            if (!(publicKey instanceof RSAPublicKey) || data % 4 == 1) {
+                return;
+            }
+            int decoded = data / 4 * 3 + (data % 4 == 0 ? 0 : data % 4 - 1);
+            int modulusBytes = (((RSAPublicKey) publicKey).getModulus().bitLength() + 7) / 8;
+            if (decoded != modulusBytes) {
+                throw new VerificationException(VerificationException.Reason.SIGNATURE_LENGTH_MISMATCH,
+                        "Pre-screen: signature is " + decoded + " bytes, RSA modulus is " + modulusBytes + " bytes");
+            }
+        }
+
+        /**
+         * Пропускает BOM UTF-8 и начальные пробелы и проверяет, что разметка записана байтами ASCII.
+         */
+        private boolean asciiCompatible() {
+            if (limit - pos >= 3 && buf.get(pos) == (byte) 0xEF && buf.get(pos + 1) == (byte) 0xBB
+                    && buf.get(pos + 2) == (byte) 0xBF) {
+                pos += 3;
+            }
+            while (pos < limit && isWhitespace(buf.get(pos))) {
+                pos++;
+            }
+            if (limit - pos < 2 || buf.get(pos) != '<' || buf.get(pos + 1) == 0) {
+                // UTF-16/32, EBCDIC или пустое сообщение
+                return false;
+            }
+            if (!startsWith(pos, "<?xml")) {
+                return true;
+            }
+            int end = skipPast(pos, "?>");
+            if (end < 0) {
+                return false;
+            }
+            String declaration = new String(bytes(pos, end), StandardCharsets.ISO_8859_1);
+            int encoding = declaration.indexOf("encoding");
+            if (encoding < 0) {
+                return true;
+            }
+            int quote = encoding + 8;
+            while (quote < declaration.length() && declaration.charAt(quote) != '"' && declaration.charAt(quote) != '\'') {
+                quote++;
+            }
+            int close = quote < declaration.length() ? declaration.indexOf(declaration.charAt(quote), quote + 1) : -1;
+            if (close < 0) {
+                return false;
+            }
+            String name = declaration.substring(quote + 1, close).toLowerCase(Locale.ROOT);
+            return name.equals("utf-8") || name.equals("us-ascii") || name.startsWith("iso-8859-")
+                    || name.startsWith("windows-125") || name.startsWith("koi8-");
+        }
+
+        private int tagEnd(int from) {
+            byte quote = 0;
+            for (int i = from; i < limit; i++) {
+                byte b = buf.get(i);
+                if (quote != 0) {
+                    if (b == quote) {
+                        quote = 0;
+                    }
+                } else if (b == '"' || b == '\'') {
+                    quote = b;
+                } else if (b == '>') {
+                    return i;
+                } else if (b == '<') {
+                    return -1;
+                }
+            }
+            return -1;
+        }
+
+        private int indexOf(char c, int from) {
+            for (int i = from; i < limit; i++) {
+                if (buf.get(i) == c) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private int skipPast(int from, String terminator) {
+            for (int i = from; i <= limit - terminator.length(); i++) {
+                if (startsWith(i, terminator)) {
+                    return i + terminator.length();
+                }
+            }
+            return -1;
+        }
+
+        private boolean startsWith(int at, String prefix) {
+            if (at + prefix.length() > limit) {
+                return false;
+            }
+            for (int i = 0; i < prefix.length(); i++) {
+                if (buf.get(at + i) != (byte) prefix.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean regionEquals(int from, int to, String name) {
+            return to - from == name.length() && startsWith(from, name);
+        }
+
+        private boolean regionEquals(int from, int to, byte[] name) {
+            if (to - from != name.length) {
+                return false;
+            }
+            for (int i = 0; i < name.length; i++) {
+                if (buf.get(from + i) != name[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private String string(int from, int to) {
+            return new String(bytes(from, to), StandardCharsets.ISO_8859_1);
+        }
+
+        private byte[] bytes(int from, int to) {
+            byte[] result = new byte[to - from];
+            for (int i = from; i < to; i++) {
+                result[i - from] = buf.get(i);
+            }
+            return result;
+        }
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+    }
+
+    private static boolean isNameEnd(byte b) {
+        return isWhitespace(b) || b == '/' || b == '>';
+    }
+
+    private static boolean isBase64(byte b) {
+        return (b >= 'A' && b <= 'Z') || (b >= 'a' && b <= 'z') || (b >= '0' && b <= '9')
+                || b == '+' || b == '/' || b == '=';
+    }
+}
@@ -0,0 +1,176 @@
+package com.customs;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLInputFactory;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Ограничения ресурсов при разборе одного сообщения, общие для DOM- и StAX-пути.
+ * Глубина, число атрибутов и раскрытия сущностей передаются парсерам JDK как свойства jdk.xml.*,
+ * DOCTYPE запрещается функцией Xerces (DOM) или проверкой события DTD (StAX),
+ * внешние DTD и внешние сущности не загружаются ни одним из парсеров, даже если DOCTYPE разрешен;
+ * размер документа проверяется заранее для массивов и файлов и через {@link #limit(InputStream)} для потоков.
+ * Значение 0 означает отсутствие ограничения, как у свойств jdk.xml.*.
+ */
+final class ParserLimits {
+
+    private static final String ENTITY_EXPANSION_LIMIT = "jdk.xml.entityExpansionLimit";
+    private static final String MAX_ELEMENT_DEPTH = "jdk.xml.maxElementDepth";
+    private static final String ELEMENT_ATTRIBUTE_LIMIT = "jdk.xml.elementAttributeLimit";
+    private static final String DISALLOW_DOCTYPE = "http://apache.org/xml/features/disallow-doctype-decl";
+    private static final String LOAD_EXTERNAL_DTD = "http://apache.org/xml/features/nonvalidating/load-external-dtd";
+    private static final String EXTERNAL_GENERAL_ENTITIES = "http://xml.org/sax/features/external-general-entities";
+    private static final String EXTERNAL_PARAMETER_ENTITIES = "http://xml.org/sax/features/external-parameter-entities";
+
+    private final long maxDocumentBytes;
+    private final int maxElementDepth;
+    private final int maxAttributes;
+    private final int maxEntityExpansions;
+    private final boolean allowDoctype;
+
+    /**
+     * @param maxDocumentBytes Максимальный размер документа в байтах.
+     * @param maxElementDepth Максимальная глубина вложенности элементов.
+     * @param maxAttributes Максимальное количество атрибутов одного элемента.
+     * @param maxEntityExpansions Максимальное количество раскрытий сущностей в документе.
+     * @param allowDoctype Разрешено ли объявление DOCTYPE.
+     */
+    ParserLimits(long maxDocumentBytes, int maxElementDepth, int maxAttributes, int maxEntityExpansions, boolean allowDoctype) {
+        this.maxDocumentBytes = maxDocumentBytes;
+        this.maxElementDepth = maxElementDepth;
+        this.maxAttributes = maxAttributes;
+        this.maxEntityExpansions = maxEntityExpansions;
+        this.allowDoctype = allowDoctype;
+    }
+
+    /**
+     * @return Разрешено ли объявление DOCTYPE.
+     */
+    boolean allowDoctype() {
+        return allowDoctype;
+    }
+
+    /**
+     * Применяет ограничения к фабрике DOM-парсера и запрещает загрузку внешних DTD, схем и сущностей.
+     * Внутренние сущности по-прежнему раскрываются.
+     * @param factory Фабрика, создаваемая для одного верификатора.
+     * @throws IllegalStateException если реализация JAXP не поддерживает ограничения.
+     */
+    void configure(DocumentBuilderFactory factory) {
+        try {
+            factory.setAttribute(ENTITY_EXPANSION_LIMIT, Integer.toString(maxEntityExpansions));
+            factory.setAttribute(MAX_ELEMENT_DEPTH, Integer.toString(maxElementDepth));
+            factory.setAttribute(ELEMENT_ATTRIBUTE_LIMIT, Integer.toString(maxAttributes));
+            factory.setFeature(DISALLOW_DOCTYPE, !allowDoctype);
+            factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+            factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_SCHEMA, "");
+            factory.setFeature(LOAD_EXTERNAL_DTD, false);
+            factory.setFeature(EXTERNAL_GENERAL_ENTITIES, false);
+            factory.setFeature(EXTERNAL_PARAMETER_ENTITIES, false);
+            factory.setExpandEntityReferences(true);
+        } catch (Exception e) {
+            throw new IllegalStateException("XML parser does not support resource limits: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Применяет ограничения к фабрике StAX и запрещает загрузку внешних DTD и сущностей.
+     * DOCTYPE проверяется вызывающим кодом по событию DTD.
+     * @param factory Фабрика, создаваемая для одного верификатора.
+     * @throws IllegalStateException если реализация StAX не поддерживает ограничения.
+     */
+    void configure(XMLInputFactory factory) {
+        try {
+            factory.setProperty(ENTITY_EXPANSION_LIMIT, maxEntityExpansions);
+            factory.setProperty(MAX_ELEMENT_DEPTH, maxElementDepth);
+            factory.setProperty(ELEMENT_ATTRIBUTE_LIMIT, maxAttributes);
+            factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+            factory.setProperty(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("StAX parser does not support resource limits: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Проверяет заранее известный размер документа.
+     * @param size Размер документа в байтах.
+     * @throws Exception если размер превышает ограничение.
+     */
+    void checkSize(long size) throws Exception {
+        if (maxDocumentBytes > 0 && size > maxDocumentBytes) {
+            throw new Exception(sizeExceeded());
+        }
+    }
+
+    /**
+     * @param in Поток с документом неизвестного размера.
+     * @return Поток, который бросает IOException при чтении сверх ограничения, или исходный поток.
+     */
+    InputStream limit(InputStream in) {
+        return maxDocumentBytes > 0 ? new LimitedInputStream(in) : in;
+    }
+
+    /**
+     * @throws Exception если DOCTYPE запрещен.
+     */
+    void checkDoctype() throws Exception {
+        if (!allowDoctype) {
+            throw new Exception("DOCTYPE is not allowed in SOAP messages");
+        }
+    }
+
+    private String sizeExceeded() {
+        return "Document exceeds the maximum size of " + maxDocumentBytes + " bytes";
+    }
+
+    /**
+     * Считает прочитанные байты и прерывает разбор, как только документ превышает ограничение.
+     */
+    private final class LimitedInputStream extends FilterInputStream {
+        private long remaining = maxDocumentBytes;
+
+        LimitedInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                consume(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int count = super.read(b, off, len);
+            if (count > 0) {
+                consume(count);
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long count = super.skip(n);
+            consume(count);
+            return count;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void consume(long count) throws IOException {
+            remaining -= count;
+            if (remaining < 0) {
+                throw new IOException(sizeExceeded());
+            }
+        }
+    }
+}
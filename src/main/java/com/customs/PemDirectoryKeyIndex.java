@@ -0,0 +1,111 @@
+package com.customs;
+
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Индекс ключей контрагентов, загруженный из каталога файлов ключей, сертификатов и хранилищ
+ * (форматы см. в {@link KeyFiles}). Отправителем файла считается часть имени до первой точки:
+ * {@code acme.pem} и {@code acme.2025.crt} дают два ключа отправителя {@code acme},
+ * что позволяет принимать старый и новый ключ на время смены.
+ *
+ * <p>Поиск - одно обращение к неизменяемой хеш-таблице без блокировок.
+ * {@link #rebuild()} читает каталог целиком и подменяет таблицу одной записью volatile-поля;
+ * если хотя бы один файл не разобран, прежний индекс остается в силе.
+ */
+public final class PemDirectoryKeyIndex implements KeyResolver {
+
+    private final Path directory;
+    private final char[] keyStorePassword;
+    private volatile Map<String, List<TrustedKey>> keys;
+
+    /**
+     * Создает индекс и сразу загружает ключи из каталога.
+     * @param directory Каталог с файлами ключей.
+     * @throws Exception если каталог недоступен или один из файлов не содержит ключа.
+     */
+    public PemDirectoryKeyIndex(Path directory) throws Exception {
+        this(directory, null);
+    }
+
+    /**
+     * Создает индекс и сразу загружает ключи из каталога.
+     * @param directory Каталог с файлами ключей.
+     * @param keyStorePassword Пароль хранилищ PKCS#12 и JKS или null.
+     * @throws Exception если каталог недоступен или один из файлов не содержит ключа.
+     */
+    public PemDirectoryKeyIndex(Path directory, char[] keyStorePassword) throws Exception {
+        this.directory = directory;
+        this.keyStorePassword = keyStorePassword == null ? null : keyStorePassword.clone();
+        rebuild();
+    }
+
+    /**
+     * Перечитывает каталог и атомарно заменяет индекс.
+     * Потоки проверки видят либо прежний, либо новый индекс целиком.
+     * @throws Exception если каталог недоступен или один из файлов не содержит ключа; индекс при этом не меняется.
+     */
+    public synchronized void rebuild() throws Exception {
+        keys = index(loadFiles(directory, keyStorePassword));
+    }
+
+    @Override
+    public List<TrustedKey> resolve(String sender) {
+        return keys.getOrDefault(sender, List.of());
+    }
+
+    /**
+     * @return Количество отправителей в текущем индексе.
+     */
+    public int size() {
+        return keys.size();
+    }
+
+    /**
+     * @param directory Каталог с файлами ключей.
+     * @param keyStorePassword Пароль хранилищ PKCS#12 и JKS или null.
+     * @return Ключи по имени файла.
+     * @throws Exception если каталог недоступен или один из файлов не содержит ключа.
+     */
+    static SortedMap<String, List<TrustedKey>> loadFiles(Path directory, char[] keyStorePassword) throws Exception {
+        SortedMap<String, List<TrustedKey>> keysByFile = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                file -> KeyFiles.isKeyFile(file.getFileName().toString()))) {
+            for (Path file : stream) {
+                if (Files.isRegularFile(file)) {
+                    keysByFile.put(file.getFileName().toString(), KeyFiles.load(file, keyStorePassword));
+                }
+            }
+        }
+        return keysByFile;
+    }
+
+    /**
+     * Группирует ключи по отправителю.
+     * @param keysByFile Ключи по имени файла, упорядоченные по имени.
+     * @return Неизменяемая таблица ключей по отправителю.
+     */
+    static Map<String, List<TrustedKey>> index(SortedMap<String, List<TrustedKey>> keysByFile) {
+        Map<String, List<TrustedKey>> index = new HashMap<>();
+        for (Map.Entry<String, List<TrustedKey>> file : keysByFile.entrySet()) {
+            index.computeIfAbsent(sender(file.getKey()), sender -> new ArrayList<>(1)).addAll(file.getValue());
+        }
+        index.replaceAll((sender, senderKeys) -> List.copyOf(senderKeys));
+        return Map.copyOf(index);
+    }
+
+    /**
+     * @param fileName Имя файла ключа.
+     * @return Отправитель: часть имени до первой точки.
+     */
+    static String sender(String fileName) {
+        return fileName.substring(0, fileName.indexOf('.'));
+    }
+}
@@ -0,0 +1,122 @@
+package com.customs;
+
+import org.apache.xml.security.c14n.Canonicalizer;
+import org.apache.xml.security.c14n.InvalidCanonicalizerException;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Signature;
+
+/**
+ * Набор переиспользуемых объектов обработки, привязанный к потоку.
+ * Фабрика DOM-парсера настраивается один раз на верификатор, а DocumentBuilder,
+ * Signature (по одному на алгоритм {@link SignatureAlgorithms}), MessageDigest и Canonicalizer
+ * создаются лениво по одному на поток для каждого {@link SignatureVerifier}
+ * (он хранит экземпляры в собственном ThreadLocal).
+ *
+ * <p>Правила использования:
+ * <ul>
+ *     <li>экземпляр и полученные из него объекты используются только в потоке-владельце
+ *     и не сохраняются после завершения обработки сообщения;</li>
+ *     <li>{@link #documentBuilder()} вызывает {@code reset()} при каждой повторной выдаче,
+ *     Signature заново инициализируется через {@code initVerify} перед каждой проверкой,
+ *     {@link #messageDigest(String)} сбрасывается при каждой выдаче;</li>
+ *     <li>пул потоков, который завершает рабочий поток или выгружает приложение,
+ *     вызывает {@link SignatureVerifier#releaseThreadResources()}, чтобы освободить ресурсы потока.</li>
+ * </ul>
+ */
+final class ProcessingResources {
+
+    private final DocumentBuilderFactory documentBuilderFactory;
+    private final String canonicalizationAlgorithm;
+    /**
+     * Signature по номеру алгоритма в реестре верификатора.
+     */
+    private final Signature[] signatures;
+
+    private DocumentBuilder documentBuilder;
+    private MessageDigest messageDigest;
+    private Canonicalizer canonicalizer;
+
+    /**
+     * @param documentBuilderFactory Фабрика верификатора с его ограничениями разбора; общая для всех потоков.
+     * @param canonicalizationAlgorithm Идентификатор алгоритма канонизации Santuario.
+     * @param signatureAlgorithms Реестр алгоритмов подписи верификатора.
+     */
+    ProcessingResources(DocumentBuilderFactory documentBuilderFactory, String canonicalizationAlgorithm,
+                        SignatureAlgorithms signatureAlgorithms) {
+        this.documentBuilderFactory = documentBuilderFactory;
+        this.canonicalizationAlgorithm = canonicalizationAlgorithm;
+        this.signatures = new Signature[signatureAlgorithms.size()];
+    }
+
+    /**
+     * Возвращает DocumentBuilder потока, сброшенный в исходное состояние.
+     * @return DocumentBuilder.
+     * @throws ParserConfigurationException если возникла ошибка конфигурации парсера.
+     */
+    DocumentBuilder documentBuilder() throws ParserConfigurationException {
+        if (documentBuilder == null) {
+            // Фабрика JAXP не гарантирует потокобезопасность
+            synchronized (documentBuilderFactory) {
+                documentBuilder = documentBuilderFactory.newDocumentBuilder();
+            }
+        } else {
+            documentBuilder.reset();
+        }
+        return documentBuilder;
+    }
+
+    /**
+     * Возвращает Signature потока для алгоритма. Перед использованием вызывающий код обязан выполнить initVerify.
+     * @param algorithm Алгоритм из реестра верификатора.
+     * @return Signature для алгоритма с установленными параметрами.
+     * @throws GeneralSecurityException если алгоритм, провайдер или параметры недоступны.
+     */
+    Signature signature(SignatureAlgorithms.Entry algorithm) throws GeneralSecurityException {
+        Signature signature = signatures[algorithm.index()];
+        if (signature == null) {
+            signature = algorithm.newSignature();
+            signatures[algorithm.index()] = signature;
+        }
+        return signature;
+    }
+
+    /**
+     * Забывает Signature потока для алгоритма; следующий вызов {@link #signature} создаст новый.
+     * @param algorithm Алгоритм из реестра верификатора.
+     */
+    void discardSignature(SignatureAlgorithms.Entry algorithm) {
+        signatures[algorithm.index()] = null;
+    }
+
+    /**
+     * Возвращает сброшенный MessageDigest потока. Верификатор использует один алгоритм хеширования.
+     * @param digestAlgorithm Имя алгоритма хеширования JCA.
+     * @return MessageDigest для указанного алгоритма.
+     * @throws NoSuchAlgorithmException если алгоритм недоступен.
+     */
+    MessageDigest messageDigest(String digestAlgorithm) throws NoSuchAlgorithmException {
+        if (messageDigest == null) {
+            messageDigest = MessageDigest.getInstance(digestAlgorithm);
+        } else {
+            messageDigest.reset();
+        }
+        return messageDigest;
+    }
+
+    /**
+     * @return Canonicalizer для настроенного алгоритма.
+     * @throws InvalidCanonicalizerException если алгоритм канонизации недоступен.
+     */
+    Canonicalizer canonicalizer() throws InvalidCanonicalizerException {
+        if (canonicalizer == null) {
+            canonicalizer = Canonicalizer.getInstance(canonicalizationAlgorithm);
+        }
+        return canonicalizer;
+    }
+}
@@ -0,0 +1,124 @@
+package com.customs;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Потокобезопасный кеш ключей, загруженных из файлов ключей, сертификатов и хранилищ (см. {@link KeyFiles}).
+ * Сертификат разбирается один раз, в кеше хранятся ключ и срок действия.
+ * Ключом служит канонический путь к файлу; запись считается актуальной,
+ * пока у файла не изменились время модификации и размер.
+ * При переполнении вытесняется давно не использовавшаяся запись (LRU).
+ */
+final class PublicKeyCache {
+
+    /**
+     * Размер кеша по умолчанию.
+     */
+    static final int DEFAULT_MAX_ENTRIES = 64;
+
+    private final Map<String, CachedKey> entries;
+    private final char[] keyStorePassword;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param maxEntries Максимальное количество ключей в кеше.
+     * @param keyStorePassword Пароль хранилищ PKCS#12 и JKS или null.
+     */
+    PublicKeyCache(int maxEntries, char[] keyStorePassword) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be positive: " + maxEntries);
+        }
+        this.keyStorePassword = keyStorePassword;
+        this.entries = new LinkedHashMap<String, CachedKey>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedKey> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Возвращает ключ из кеша или загружает его из файла, если файл новый или изменился.
+     * Чтение и разбор файла выполняются вне блокировки.
+     *
+     * @param keyFile Файл ключа, сертификата или хранилища с одним ключом.
+     * @return Ключ со сроком действия.
+     * @throws Exception если файл недоступен или не содержит ровно один ключ.
+     */
+    TrustedKey get(File keyFile) throws Exception {
+        String path = keyFile.getCanonicalPath();
+        BasicFileAttributes attributes = Files.readAttributes(keyFile.toPath(), BasicFileAttributes.class);
+        FileTime lastModified = attributes.lastModifiedTime();
+        long size = attributes.size();
+
+        CachedKey entry;
+        synchronized (entries) {
+            entry = entries.get(path);
+        }
+        if (entry != null && entry.size == size && entry.lastModified.equals(lastModified)) {
+            hits.increment();
+            return entry.trustedKey;
+        }
+
+        misses.increment();
+        TrustedKey trustedKey = KeyFiles.loadSingle(keyFile.toPath(), keyStorePassword);
+        synchronized (entries) {
+            entries.put(path, new CachedKey(trustedKey, lastModified, size));
+        }
+        return trustedKey;
+    }
+
+    /**
+     * @return Количество обращений, обслуженных из кеша.
+     */
+    long hitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return Количество обращений, потребовавших загрузки ключа из файла.
+     */
+    long missCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return Текущее количество ключей в кеше.
+     */
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Удаляет все ключи из кеша. Счетчики не сбрасываются.
+     */
+    void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * Загруженный ключ вместе с атрибутами файла, по которым проверяется его актуальность.
+     */
+    private static final class CachedKey {
+        final TrustedKey trustedKey;
+        final FileTime lastModified;
+        final long size;
+
+        CachedKey(TrustedKey trustedKey, FileTime lastModified, long size) {
+            this.trustedKey = trustedKey;
+            this.lastModified = lastModified;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.customs;
+
+import java.math.BigInteger;
+import java.security.cert.X509CRL;
+import java.security.cert.X509CRLEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Отозванные серийные номера одного CRL в компактном виде.
+ * Номера до 63 бит (подавляющее большинство) хранятся в отсортированном long[],
+ * остальные - в отсортированном массиве BigInteger; поиск - двоичный, без аллокаций для коротких номеров.
+ * Экземпляр неизменяем.
+ */
+final class RevocationList {
+
+    private static final int LONG_SERIAL_BITS = 63;
+
+    private final long[] serials;
+    private final BigInteger[] largeSerials;
+    private final long nextUpdate;
+
+    /**
+     * @param revokedSerials Отозванные серийные номера.
+     * @param nextUpdate Время следующего выпуска CRL, мс от эпохи; Long.MAX_VALUE, если не указано.
+     */
+    RevocationList(Collection<BigInteger> revokedSerials, long nextUpdate) {
+        long[] small = new long[revokedSerials.size()];
+        int smallCount = 0;
+        List<BigInteger> large = new ArrayList<>();
+        for (BigInteger serial : revokedSerials) {
+            if (serial.signum() >= 0 && serial.bitLength() <= LONG_SERIAL_BITS) {
+                small[smallCount++] = serial.longValue();
+            } else {
+                large.add(serial);
+            }
+        }
+        this.serials = Arrays.copyOf(small, smallCount);
+        Arrays.sort(serials);
+        this.largeSerials = large.toArray(new BigInteger[0]);
+        Arrays.sort(largeSerials);
+        this.nextUpdate = nextUpdate;
+    }
+
+    /**
+     * @param crl CRL с уже проверенной подписью.
+     * @return Индекс отозванных номеров CRL.
+     */
+    static RevocationList of(X509CRL crl) {
+        Set<? extends X509CRLEntry> entries = crl.getRevokedCertificates();
+        List<BigInteger> revokedSerials = new ArrayList<>(entries == null ? 0 : entries.size());
+        if (entries != null) {
+            for (X509CRLEntry entry : entries) {
+                revokedSerials.add(entry.getSerialNumber());
+            }
+        }
+        return new RevocationList(revokedSerials, crl.getNextUpdate() == null ? Long.MAX_VALUE : crl.getNextUpdate().getTime());
+    }
+
+    /**
+     * @param serial Серийный номер сертификата.
+     * @return true, если номер отозван.
+     */
+    boolean isRevoked(BigInteger serial) {
+        if (serial.signum() >= 0 && serial.bitLength() <= LONG_SERIAL_BITS) {
+            return Arrays.binarySearch(serials, serial.longValue()) >= 0;
+        }
+        return Arrays.binarySearch(largeSerials, serial) >= 0;
+    }
+
+    /**
+     * @return Время следующего выпуска CRL, мс от эпохи.
+     */
+    long nextUpdate() {
+        return nextUpdate;
+    }
+
+    /**
+     * @return Количество отозванных номеров.
+     */
+    int size() {
+        return serials.length + largeSerials.length;
+    }
+}
@@ -0,0 +1,134 @@
+package com.customs;
+
+import java.math.BigInteger;
+import java.security.PublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Проверка подписи RSASSA-PKCS1-v1_5 по заранее вычисленному хешу сразу для нескольких ключей.
+ * Хеш канонической формы считается один раз, из него строится ожидаемое сообщение
+ * {@code 00 01 FF..FF 00 || DigestInfo}, а каждый ключ-кандидат стоит одного возведения подписи
+ * в открытую степень по модулю и сравнения чисел. Кодирование DigestInfo совпадает с тем,
+ * что проверяет SunRsaSign (идентификатор алгоритма с параметром NULL), поэтому результат
+ * совпадает с {@link java.security.Signature} для тех же ключа и подписи.
+ * Экземпляр неизменяем.
+ */
+final class RsaPkcs1Verifier {
+
+    /**
+     * Префиксы DER DigestInfo из RFC 8017, раздел 9.2, примечание 1.
+     */
+    private static final byte[] SHA256_PREFIX = hex("3031300d060960864801650304020105000420");
+    private static final byte[] SHA384_PREFIX = hex("3041300d060960864801650304020205000430");
+    private static final byte[] SHA512_PREFIX = hex("3051300d060960864801650304020305000440");
+
+    /**
+     * Минимальная длина заполнения FF по RFC 8017.
+     */
+    private static final int MIN_PADDING = 8;
+
+    private final String digestAlgorithm;
+    private final byte[] digestInfoPrefix;
+
+    private RsaPkcs1Verifier(String digestAlgorithm, byte[] digestInfoPrefix) {
+        this.digestAlgorithm = digestAlgorithm;
+        this.digestInfoPrefix = digestInfoPrefix;
+    }
+
+    /**
+     * @param signatureAlgorithm Имя алгоритма подписи JCA.
+     * @return Проверка для SHA256withRSA, SHA384withRSA или SHA512withRSA; null для остальных алгоритмов.
+     */
+    static RsaPkcs1Verifier forAlgorithm(String signatureAlgorithm) {
+        switch (signatureAlgorithm.toUpperCase(Locale.ROOT)) {
+            case "SHA256WITHRSA":
+                return new RsaPkcs1Verifier("SHA-256", SHA256_PREFIX);
+            case "SHA384WITHRSA":
+                return new RsaPkcs1Verifier("SHA-384", SHA384_PREFIX);
+            case "SHA512WITHRSA":
+                return new RsaPkcs1Verifier("SHA-512", SHA512_PREFIX);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @return Имя алгоритма хеширования JCA.
+     */
+    String digestAlgorithm() {
+        return digestAlgorithm;
+    }
+
+    /**
+     * @param publicKeys Ключи-кандидаты.
+     * @return true, если все ключи RSA, допускают PKCS#1 v1.5 (не RSASSA-PSS) и их можно проверить без Signature.
+     */
+    static boolean supports(List<PublicKey> publicKeys) {
+        for (PublicKey publicKey : publicKeys) {
+            if (!(publicKey instanceof RSAPublicKey) || SignatureAlgorithms.isPssKey(publicKey)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Проверяет подпись ключами по очереди до первого совпадения.
+     * @param signature Байты подписи.
+     * @param digest Хеш канонической формы, вычисленный алгоритмом {@link #digestAlgorithm()}.
+     * @param publicKeys Ключи RSA в порядке перебора.
+     * @return true, если подпись действительна хотя бы для одного ключа.
+     */
+    boolean verifyAny(byte[] signature, byte[] digest, List<PublicKey> publicKeys) {
+        BigInteger signatureValue = new BigInteger(1, signature);
+        int encodedLength = -1;
+        BigInteger expected = null;
+        for (PublicKey publicKey : publicKeys) {
+            RSAPublicKey rsaKey = (RSAPublicKey) publicKey;
+            BigInteger modulus = rsaKey.getModulus();
+            int modulusLength = (modulus.bitLength() + 7) / 8;
+            // Подпись PKCS#1 занимает ровно длину модуля и меньше модуля как число
+            if (signature.length != modulusLength || signatureValue.compareTo(modulus) >= 0) {
+                continue;
+            }
+            if (modulusLength != encodedLength) {
+                encodedLength = modulusLength;
+                expected = encodedMessage(digest, modulusLength);
+            }
+            if (expected != null && signatureValue.modPow(rsaKey.getPublicExponent(), modulus).equals(expected)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Строит EMSA-PKCS1-v1_5 для модуля заданной длины.
+     * @return Ожидаемое сообщение как число или null, если модуль слишком короткий для DigestInfo.
+     */
+    private BigInteger encodedMessage(byte[] digest, int length) {
+        int digestInfoLength = digestInfoPrefix.length + digest.length;
+        int paddingLength = length - digestInfoLength - 3;
+        if (paddingLength < MIN_PADDING) {
+            return null;
+        }
+        byte[] encoded = new byte[length];
+        encoded[1] = 0x01;
+        Arrays.fill(encoded, 2, 2 + paddingLength, (byte) 0xFF);
+        int offset = 3 + paddingLength;
+        System.arraycopy(digestInfoPrefix, 0, encoded, offset, digestInfoPrefix.length);
+        System.arraycopy(digest, 0, encoded, offset + digestInfoPrefix.length, digest.length);
+        return new BigInteger(1, encoded);
+    }
+
+    private static byte[] hex(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+        }
+        return bytes;
+    }
+}
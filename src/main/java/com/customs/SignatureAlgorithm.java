@@ -0,0 +1,69 @@
+package com.customs;
+
+import java.security.spec.AlgorithmParameterSpec;
+import java.security.spec.MGF1ParameterSpec;
+import java.security.spec.PSSParameterSpec;
+
+/**
+ * Алгоритмы подписи, согласованные с контрагентами.
+ * Задаются в {@link SignatureVerifier.Builder} явно для всех ключей или по типу ключа отправителя.
+ */
+public enum SignatureAlgorithm {
+
+    /**
+     * RSASSA-PKCS1-v1_5 с SHA-256.
+     */
+    RSA_SHA256("SHA256withRSA", KeyType.RSA, null),
+    /**
+     * RSASSA-PKCS1-v1_5 с SHA-512; алгоритм Exchange-кода и значение по умолчанию для ключей RSA.
+     */
+    RSA_SHA512("SHA512withRSA", KeyType.RSA, null),
+    /**
+     * RSASSA-PSS с SHA-256, MGF1(SHA-256) и солью 32 байта.
+     */
+    RSA_PSS_SHA256("RSASSA-PSS", KeyType.RSA, new PSSParameterSpec("SHA-256", "MGF1", MGF1ParameterSpec.SHA256, 32, 1)),
+    /**
+     * ECDSA с SHA-256, подпись в DER (SEQUENCE из r и s); для ключей P-256 и значение по умолчанию для ключей EC.
+     */
+    ECDSA_SHA256("SHA256withECDSA", KeyType.EC, null),
+    /**
+     * ECDSA с SHA-256, подпись в формате IEEE P1363 (r || s фиксированной длины); для ключей P-256.
+     */
+    ECDSA_SHA256_P1363("SHA256withECDSAinP1363Format", KeyType.EC, null);
+
+    /**
+     * Тип ключа, для которого определен алгоритм.
+     */
+    enum KeyType {
+        RSA,
+        EC
+    }
+
+    private final String jcaName;
+    private final KeyType keyType;
+    private final AlgorithmParameterSpec parameters;
+
+    SignatureAlgorithm(String jcaName, KeyType keyType, AlgorithmParameterSpec parameters) {
+        this.jcaName = jcaName;
+        this.keyType = keyType;
+        this.parameters = parameters;
+    }
+
+    /**
+     * @return Имя алгоритма подписи JCA.
+     */
+    public String getJcaName() {
+        return jcaName;
+    }
+
+    KeyType keyType() {
+        return keyType;
+    }
+
+    /**
+     * @return Параметры алгоритма для {@link java.security.Signature#setParameter(AlgorithmParameterSpec)} или null.
+     */
+    AlgorithmParameterSpec parameters() {
+        return parameters;
+    }
+}
@@ -0,0 +1,205 @@
+package com.customs;
+
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.AlgorithmParameterSpec;
+import java.security.spec.PSSParameterSpec;
+import java.util.List;
+
+/**
+ * Реестр алгоритмов подписи одного верификатора.
+ * Алгоритм либо задан явно для всех ключей, либо выбирается по типу ключа (RSA, RSASSA-PSS или EC).
+ * Каждому используемому алгоритму присваивается номер, по которому {@link ProcessingResources}
+ * хранит Signature потока в массиве, поэтому выбор алгоритма при проверке - это проверка типа ключа
+ * и обращение по индексу, без поиска провайдера и разбора имени. Экземпляр неизменяем.
+ */
+final class SignatureAlgorithms {
+
+    private static final String PSS_JCA_NAME = "RSASSA-PSS";
+
+    private final Entry[] entries;
+    /**
+     * Алгоритм для всех ключей или null, если алгоритм выбирается по типу ключа.
+     */
+    private final Entry fixed;
+    private final Entry rsa;
+    /**
+     * Алгоритм для ключей с типом RSASSA-PSS: такие ключи допускают только подпись PSS.
+     */
+    private final Entry pss;
+    private final Entry ec;
+
+    /**
+     * Алгоритм, заданный для всех ключей.
+     * @param jcaName Имя алгоритма подписи JCA.
+     * @param parameters Параметры алгоритма или null.
+     * @param provider Имя провайдера JCA или null для провайдера по умолчанию.
+     */
+    SignatureAlgorithms(String jcaName, AlgorithmParameterSpec parameters, String provider) {
+        this.fixed = new Entry(0, jcaName, parameters, provider);
+        this.rsa = null;
+        this.pss = null;
+        this.ec = null;
+        this.entries = new Entry[]{fixed};
+    }
+
+    /**
+     * Алгоритмы по типу ключа.
+     * Ключам RSASSA-PSS достается алгоритм для RSA, если это PSS, иначе {@link SignatureAlgorithm#RSA_PSS_SHA256}.
+     * @param rsa Алгоритм для ключей RSA.
+     * @param ec Алгоритм для ключей EC.
+     * @param provider Имя провайдера JCA или null для провайдера по умолчанию.
+     */
+    SignatureAlgorithms(SignatureAlgorithm rsa, SignatureAlgorithm ec, String provider) {
+        this.fixed = null;
+        this.rsa = new Entry(0, rsa.getJcaName(), rsa.parameters(), provider);
+        this.ec = new Entry(1, ec.getJcaName(), ec.parameters(), provider);
+        if (this.rsa.pss) {
+            this.pss = this.rsa;
+            this.entries = new Entry[]{this.rsa, this.ec};
+        } else {
+            SignatureAlgorithm pss = SignatureAlgorithm.RSA_PSS_SHA256;
+            this.pss = new Entry(2, pss.getJcaName(), pss.parameters(), provider);
+            this.entries = new Entry[]{this.rsa, this.ec, this.pss};
+        }
+    }
+
+    /**
+     * @param publicKey Ключ, которым будет проверяться подпись.
+     * @return Алгоритм для ключа.
+     * @throws InvalidKeyException если алгоритм для типа ключа не настроен; при переборе ключей такой ключ пропускается.
+     */
+    Entry select(PublicKey publicKey) throws InvalidKeyException {
+        Entry entry = find(publicKey);
+        if (entry == null) {
+            throw new InvalidKeyException("No signature algorithm configured for key type " + publicKey.getAlgorithm());
+        }
+        return entry;
+    }
+
+    /**
+     * @param publicKeys Ключи-кандидаты.
+     * @return Проверка по одному хешу, если все ключи - RSA (не RSASSA-PSS) и получают один и тот же
+     *         алгоритм RSASSA-PKCS1-v1_5; иначе null.
+     */
+    RsaPkcs1Verifier rsaPkcs1Verifier(List<PublicKey> publicKeys) {
+        Entry common = null;
+        for (PublicKey publicKey : publicKeys) {
+            Entry entry = find(publicKey);
+            if (entry == null || entry.rsaPkcs1Verifier == null || (common != null && entry != common)) {
+                return null;
+            }
+            common = entry;
+        }
+        return common != null && RsaPkcs1Verifier.supports(publicKeys) ? common.rsaPkcs1Verifier : null;
+    }
+
+    private Entry find(PublicKey publicKey) {
+        if (fixed != null) {
+            return fixed;
+        }
+        if (publicKey instanceof RSAPublicKey) {
+            return isPssKey(publicKey) ? pss : rsa;
+        }
+        if (publicKey instanceof ECPublicKey) {
+            return ec;
+        }
+        return null;
+    }
+
+    /**
+     * @param publicKey Ключ RSA.
+     * @return true, если ключ имеет тип RSASSA-PSS (OID id-RSASSA-PSS) и не допускает PKCS#1 v1.5.
+     */
+    static boolean isPssKey(PublicKey publicKey) {
+        return PSS_JCA_NAME.equals(publicKey.getAlgorithm());
+    }
+
+    /**
+     * @return Количество алгоритмов; номера алгоритмов меньше этого значения.
+     */
+    int size() {
+        return entries.length;
+    }
+
+    /**
+     * Создает Signature каждого алгоритма, чтобы ошибка конфигурации обнаруживалась при старте.
+     * @throws GeneralSecurityException если алгоритм, провайдер или параметры недоступны.
+     */
+    void checkAvailable() throws GeneralSecurityException {
+        for (Entry entry : entries) {
+            entry.newSignature();
+        }
+    }
+
+    /**
+     * Алгоритм с провайдером и параметрами и его номер в реестре.
+     */
+    static final class Entry {
+        private final int index;
+        private final String jcaName;
+        private final AlgorithmParameterSpec parameters;
+        private final String provider;
+        private final boolean pss;
+        private final RsaPkcs1Verifier rsaPkcs1Verifier;
+
+        private Entry(int index, String jcaName, AlgorithmParameterSpec parameters, String provider) {
+            this.index = index;
+            this.jcaName = jcaName;
+            this.parameters = parameters;
+            this.provider = provider;
+            this.pss = PSS_JCA_NAME.equalsIgnoreCase(jcaName);
+            // Явно заданный провайдер обходить нельзя: вся проверка идет через его Signature
+            this.rsaPkcs1Verifier = provider == null && parameters == null ? RsaPkcs1Verifier.forAlgorithm(jcaName) : null;
+        }
+
+        /**
+         * @return Номер алгоритма в реестре.
+         */
+        int index() {
+            return index;
+        }
+
+        /**
+         * Параметры PSS, записанные в самом ключе RSASSA-PSS, обязательны для подписи этим ключом
+         * и заменяют параметры алгоритма.
+         * @param publicKey Ключ, которым будет проверяться подпись.
+         * @return Параметры из ключа или null, если действуют параметры алгоритма.
+         */
+        AlgorithmParameterSpec keyParameters(PublicKey publicKey) {
+            if (pss && publicKey instanceof RSAKey) {
+                AlgorithmParameterSpec keyParameters = ((RSAKey) publicKey).getParams();
+                if (keyParameters instanceof PSSParameterSpec) {
+                    return keyParameters;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @return Новый Signature алгоритма с установленными параметрами.
+         * @throws GeneralSecurityException если алгоритм, провайдер или параметры недоступны.
+         */
+        Signature newSignature() throws GeneralSecurityException {
+            return newSignature(parameters);
+        }
+
+        /**
+         * @param parameters Параметры вместо параметров алгоритма или null.
+         * @return Новый Signature алгоритма с указанными параметрами.
+         * @throws GeneralSecurityException если алгоритм, провайдер или параметры недоступны.
+         */
+        Signature newSignature(AlgorithmParameterSpec parameters) throws GeneralSecurityException {
+            Signature signature = provider == null ? Signature.getInstance(jcaName) : Signature.getInstance(jcaName, provider);
+            if (parameters != null) {
+                signature.setParameter(parameters);
+            }
+            return signature;
+        }
+    }
+}
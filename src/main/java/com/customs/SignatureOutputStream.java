@@ -0,0 +1,78 @@
+package com.customs;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.Signature;
+import java.security.SignatureException;
+
+/**
+ * Адаптер OutputStream, передающий записанные байты в {@link Signature#update(byte[], int, int)}.
+ * Канонизатор пишет сюда напрямую, поэтому каноническая форма целиком в памяти не существует.
+ * Мелкие записи (Santuario пишет побайтно) собираются в буфер фиксированного размера;
+ * крупные блоки передаются в Signature без копирования.
+ */
+final class SignatureOutputStream extends OutputStream {
+
+    /**
+     * Размер порции, передаваемой в Signature.update.
+     */
+    static final int CHUNK_SIZE = 8192;
+
+    private final Signature signature;
+    private final byte[] buffer = new byte[CHUNK_SIZE];
+    private int count;
+
+    /**
+     * @param signature Signature, уже инициализированная для проверки.
+     */
+    SignatureOutputStream(Signature signature) {
+        this.signature = signature;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count == buffer.length) {
+            flushBuffer();
+        }
+        buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (len >= buffer.length) {
+            flushBuffer();
+            update(b, off, len);
+            return;
+        }
+        if (len > buffer.length - count) {
+            flushBuffer();
+        }
+        System.arraycopy(b, off, buffer, count, len);
+        count += len;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flushBuffer();
+    }
+
+    private void flushBuffer() throws IOException {
+        if (count > 0) {
+            update(buffer, 0, count);
+            count = 0;
+        }
+    }
+
+    private void update(byte[] b, int off, int len) throws IOException {
+        try {
+            signature.update(b, off, len);
+        } catch (SignatureException e) {
+            throw new IOException("Failed to update signature with canonical bytes", e);
+        }
+    }
+}
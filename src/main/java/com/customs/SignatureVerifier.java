@@ -0,0 +1,1078 @@
+package com.customs;
+
+import org.apache.xml.security.Init;
+import org.apache.xml.security.c14n.Canonicalizer;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.Source;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.sax.SAXSource;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Неизменяемый потокобезопасный верификатор подписей SOAP-сообщений.
+ * Экземпляр создается через {@link Builder}, владеет своим кешем ключей и ресурсами потоков
+ * и рассчитан на долгую жизнь: сервер держит один экземпляр и использует его из всех рабочих потоков.
+ *
+ * <p>Ресурсы разбора привязаны к потоку (см. {@link ProcessingResources}); пул потоков,
+ * завершающий рабочий поток, может вызвать {@link #releaseThreadResources()}.
+ */
+public final class SignatureVerifier {
+
+    static {
+        // Инициализация библиотеки Apache Santuario.
+        Init.init();
+    }
+
+    private final String signatureElementName;
+    private final String signatureXPath;
+    private final String senderElementName;
+    private final String canonicalizationAlgorithm;
+    private final SignatureAlgorithms signatureAlgorithms;
+    private final boolean namespaceFreeCanonicalization;
+    private final PublicKeyCache keyCache;
+    /**
+     * Проверка цепочки и отзыва сертификатов или null, если она не настроена.
+     */
+    private final CertificateValidator certificateValidator;
+    /**
+     * Локаторы по пространству имен конверта в порядке настройки; первый используется для
+     * документов с неизвестным пространством имен и сообщает об ошибке как обычно.
+     */
+    private final Map<String, EnvelopeLocator> envelopeLocators;
+    private final EnvelopeLocator defaultEnvelopeLocator;
+    private final ParserLimits parserLimits;
+    private final StreamingCanonicalizer streamingCanonicalizer;
+    /**
+     * Предварительная проверка байтов или null, если она отключена.
+     */
+    private final MessagePreScreen preScreen;
+    private final ForkJoinPool forkJoinPool;
+    private final ThreadLocal<ProcessingResources> resources;
+
+    private SignatureVerifier(Builder builder, SignatureAlgorithms signatureAlgorithms) {
+        this.signatureElementName = builder.signatureElementName;
+        this.signatureXPath = "/soap:Envelope/soap:Header/" + builder.signatureElementName;
+        this.senderElementName = builder.senderElementName;
+        this.canonicalizationAlgorithm = builder.canonicalizationAlgorithm;
+        this.signatureAlgorithms = signatureAlgorithms;
+        this.namespaceFreeCanonicalization = Canonicalizer.ALGO_ID_C14N_OMIT_COMMENTS.equals(canonicalizationAlgorithm);
+        this.keyCache = new PublicKeyCache(builder.keyCacheSize, builder.keyStorePassword);
+        this.certificateValidator = builder.certificateValidator;
+        Map<String, EnvelopeLocator> locators = new LinkedHashMap<>();
+        for (String soapNamespace : builder.soapNamespaces) {
+            locators.put(soapNamespace, new EnvelopeLocator(soapNamespace, signatureElementName));
+        }
+        this.envelopeLocators = Collections.unmodifiableMap(locators);
+        this.defaultEnvelopeLocator = locators.values().iterator().next();
+        this.parserLimits = new ParserLimits(builder.maxDocumentBytes, builder.maxElementDepth,
+                builder.maxAttributes, builder.maxEntityExpansions, builder.allowDoctype);
+        DocumentBuilderFactory documentBuilderFactory = XmlSignatureProcessor.createDocumentBuilderFactory();
+        parserLimits.configure(documentBuilderFactory);
+        this.streamingCanonicalizer = new StreamingCanonicalizer(envelopeLocators.keySet(), signatureElementName, parserLimits);
+        this.preScreen = builder.preScreen ? new MessagePreScreen(envelopeLocators.keySet(), signatureElementName) : null;
+        this.forkJoinPool = builder.forkJoinPool;
+        this.resources = ThreadLocal.withInitial(
+                () -> new ProcessingResources(documentBuilderFactory, canonicalizationAlgorithm, signatureAlgorithms));
+    }
+
+    /**
+     * @return Построитель с настройками по умолчанию: алгоритмы Exchange-кода (SHA512withRSA для ключей RSA,
+     *         SHA256withECDSA для ключей EC), все версии {@link SoapVersion}.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Верифицирует подпись SOAP-сообщения за один разбор документа.
+     * Подпись из Header и дочерние элементы Body берутся из одного и того же Document.
+     * До разбора байты проходят дешевую предварительную проверку, если она не отключена в построителе.
+     *
+     * @param soapXml Байты полного XML-документа SOAP.
+     * @param publicKeyFile Файл публичного ключа PEM, сертификата X.509 или хранилища PKCS#12/JKS с одним ключом.
+     * @return true, если подпись действительна, иначе false.
+     * @throws VerificationException если сообщение отклонено предварительной проверкой байтов.
+     * @throws Exception Если произошла ошибка при разборе, канонизации, загрузке ключа или верификации.
+     */
+    public boolean verify(byte[] soapXml, File publicKeyFile) throws Exception {
+        return verify(soapXml, 0, soapXml.length, publicKeyFile);
+    }
+
+    /**
+     * Верифицирует подпись SOAP-сообщения, занимающего часть массива, без копирования байтов.
+     * Кодировка определяется парсером по BOM и XML-декларации исходных байтов.
+     * До разбора байты проходят дешевую предварительную проверку, если она не отключена в построителе.
+     *
+     * @param soapXml Массив, содержащий XML-документ SOAP.
+     * @param offset Смещение начала документа.
+     * @param length Длина документа в байтах.
+     * @param publicKeyFile Файл публичного ключа PEM, сертификата X.509 или хранилища PKCS#12/JKS с одним ключом.
+     * @return true, если подпись действительна, иначе false.
+     * @throws VerificationException если сообщение отклонено предварительной проверкой байтов.
+     * @throws Exception Если произошла ошибка при разборе, канонизации, загрузке ключа или верификации.
+     */
+    public boolean verify(byte[] soapXml, int offset, int length, File publicKeyFile) throws Exception {
+        Objects.checkFromIndexSize(offset, length, soapXml.length);
+        return verify(ByteBuffer.wrap(soapXml, offset, length), publicKeyFile);
+    }
+
+    /**
+     * Верифицирует подпись SOAP-сообщения из оставшихся байтов буфера без копирования.
+     * Позиция буфера не меняется. Кодировка определяется по BOM и XML-декларации.
+     * До разбора байты проходят дешевую предварительную проверку, если она не отключена в построителе.
+     *
+     * @param soapXml Буфер с XML-документом SOAP (в куче, direct или mapped).
+     * @param publicKeyFile Файл публичного ключа PEM, сертификата X.509 или хранилища PKCS#12/JKS с одним ключом.
+     * @return true, если подпись действительна, иначе false.
+     * @throws VerificationException если сообщение отклонено предварительной проверкой байтов.
+     * @throws Exception Если произошла ошибка при разборе, канонизации, загрузке ключа или верификации.
+     */
+    public boolean verify(ByteBuffer soapXml, File publicKeyFile) throws Exception {
+        parserLimits.checkSize(soapXml.remaining());
+        PublicKey publicKey = loadPublicKey(publicKeyFile);
+        if (preScreen != null) {
+            preScreen.check(soapXml, publicKey);
+        }
+        return verify(parse(ByteBufferInputStream.of(soapXml)), publicKey);
+    }
+
+    /**
+     * Верифицирует подпись SOAP-сообщения, уже декодированного в строку.
+     * Строка разбирается через Reader, без повторного кодирования в байты;
+     * объявленная в XML-декларации кодировка при этом не используется.
+     *
+     * @param soapXml Полный XML-документ SOAP.
+     * @param publicKeyFile Файл публичного ключа PEM, сертификата X.509 или хранилища PKCS#12/JKS с одним ключом.
+     * @return true, если подпись действительна, иначе false.
+     * @throws Exception Если произошла ошибка при разборе, канонизации, загрузке ключа или верификации.
+     */
+    public boolean verify(String soapXml, File publicKeyFile) throws Exception {
+        return verify(parse(soapXml), loadPublicKey(publicKeyFile));
+    }
+
+    /**
+     * Верифицирует подпись SOAP-сообщения за один разбор документа.
+     * Каноническая форма Body сразу уходит в Signature.update и не собирается в массив.
+     *
+     * @param soapXml Поток с полным XML-документом SOAP.
+     * @param publicKeyFile Файл публичного ключа PEM, сертификата X.509 или хранилища PKCS#12/JKS с одним ключом.
+     * @return true, если подпись действительна, иначе false.
+     * @throws Exception Если произошла ошибка при разборе, канонизации, загрузке ключа или верификации.
+     */
+    public boolean verify(InputStream soapXml, File publicKeyFile) throws Exception {
+        return verify(parse(soapXml), loadPublicKey(publicKeyFile));
+    }
+
+    /**
+     * Верифицирует подпись SOAP-сообщения ключом отправителя, указанного в SOAP Header.
+     *
+     * @param soapXml Байты полного XML-документа SOAP.
+     * @param keyResolver Источник ключей по отправителю, например {@link PemDirectoryKeyIndex}.
+     * @return true, если подпись действительна хотя бы для одного ключа отправителя, иначе false.
+     * @throws VerificationException если сообщение отклонено предварительной проверкой байтов.
+     * @throws Exception Если отправитель не найден или неизвестен, либо произошла ошибка при разборе,
+     *                   канонизации или верификации.
+     */
+    public boolean verify(byte[] soapXml, KeyResolver keyResolver) throws Exception {
+        return verify(ByteBuffer.wrap(soapXml), keyResolver);
+    }
+
+    /**
+     * Верифицирует подпись SOAP-сообщения из оставшихся байтов буфера ключом отправителя,
+     * указанного в SOAP Header. Позиция буфера не меняется.
+     * Предварительная проверка байтов выполняется без сверки длины подписи: ключ известен только после разбора.
+     *
+     * @param soapXml Буфер с XML-документом SOAP (в куче, direct или mapped).
+     * @param keyResolver Источник ключей по отправителю, например {@link PemDirectoryKeyIndex}.
+     * @return true, если подпись действительна хотя бы для одного ключа отправителя, иначе false.
+     * @throws VerificationException если сообщение отклонено предварительной проверкой байтов.
+     * @throws Exception Если отправитель не найден или неизвестен, либо произошла ошибка при разборе,
+     *                   канонизации или верификации.
+     */
+    public boolean verify(ByteBuffer soapXml, KeyResolver keyResolver) throws Exception {
+        parserLimits.checkSize(soapXml.remaining());
+        if (preScreen != null) {
+            preScreen.check(soapXml, null);
+        }
+        return verify(parse(ByteBufferInputStream.of(soapXml)), keyResolver);
+    }
+
+    /**
+     * Верифицирует подпись SOAP-сообщения ключом отправителя, указанного в SOAP Header.
+     *
+     * @param soapXml Поток с полным XML-документом SOAP.
+     * @param keyResolver Источник ключей по отправителю, например {@link PemDirectoryKeyIndex}.
+     * @return true, если подпись действительна хотя бы для одного ключа отправителя, иначе false.
+     * @throws Exception Если отправитель не найден или неизвестен, либо произошла ошибка при разборе,
+     *                   канонизации или верификации.
+     */
+    public boolean verify(InputStream soapXml, KeyResolver keyResolver) throws Exception {
+        return verify(parse(soapXml), keyResolver);
+    }
+
+    /**
+     * Верифицирует подпись SOAP-сообщения потоково, без построения DOM.
+     * Подпись из Header собирается по ходу чтения, а канонические байты Body
+     * хешируются по мере их появления, поэтому память не зависит от размера документа.
+     * Поддерживается только канонизация {@link Canonicalizer#ALGO_ID_C14N_OMIT_COMMENTS}.
+     *
+     * @param soapXml Поток с полным XML-документом SOAP.
+     * @param publicKeyFile Файл публичного ключа PEM, сертификата X.509 или хранилища PKCS#12/JKS с одним ключом.
+     * @return true, если подпись действительна, иначе false.
+     * @throws Exception Если произошла ошибка при разборе, канонизации, загрузке ключа или верификации.
+     */
+    public boolean verifyStreaming(InputStream soapXml, File publicKeyFile) throws Exception {
+        requireStreamingSupport();
+        Signature signature = initVerifySignature(loadPublicKey(publicKeyFile));
+        String signatureBase64;
+        try (SignatureOutputStream out = new SignatureOutputStream(signature)) {
+            signatureBase64 = streamingCanonicalizer.canonicalizeSoapBody(soapXml, out).trim();
+        }
+        if (signatureBase64.isEmpty()) {
+            throw signatureNotFound();
+        }
+        return signature.verify(Base64.getDecoder().decode(signatureBase64));
+    }
+
+    /**
+     * Верифицирует подпись SOAP-сообщения из файла, отображенного в память.
+     * Файл не читается в кучу целиком: при потоковой канонизации память не зависит
+     * от размера файла, канонические байты совпадают с {@link #canonicalizeSoapBody(Document)}.
+     * Для алгоритмов канонизации без потоковой поддержки документ разбирается в DOM
+     * из того же отображения.
+     *
+     * @param soapXmlFile Файл с полным XML-документом SOAP.
+     * @param publicKeyFile Файл публичного ключа PEM, сертификата X.509 или хранилища PKCS#12/JKS с одним ключом.
+     * @return true, если подпись действительна, иначе false.
+     * @throws Exception Если произошла ошибка при чтении, разборе, канонизации, загрузке ключа или верификации.
+     */
+    public boolean verify(Path soapXmlFile, File publicKeyFile) throws Exception {
+        parserLimits.checkSize(Files.size(soapXmlFile));
+        try (InputStream in = new MappedFileInputStream(soapXmlFile)) {
+            if (namespaceFreeCanonicalization) {
+                return verifyStreaming(in, publicKeyFile);
+            }
+            return verify(in, publicKeyFile);
+        }
+    }
+
+    /**
+     * Выполняет потоковую канонизацию SOAP Body без построения DOM.
+     *
+     * @param soapXml Поток с полным XML-документом SOAP.
+     * @return Канонизированные байты.
+     * @throws Exception если Body не найден или возникла ошибка разбора.
+     */
+    public byte[] canonicalizeSoapBodyStreaming(InputStream soapXml) throws Exception {
+        requireStreamingSupport();
+        ByteArrayOutputStream finalStream = new ByteArrayOutputStream();
+        streamingCanonicalizer.canonicalizeSoapBody(soapXml, finalStream);
+        return finalStream.toByteArray();
+    }
+
+    /**
+     * Параллельно проверяет пакет сообщений в настроенном ForkJoinPool.
+     * Поддерживаются StreamSource, SAXSource и DOMSource (уже разобранный документ).
+     * Ошибка отдельного сообщения сохраняется в его результате и не прерывает пакет.
+     *
+     * @param sources Сообщения для проверки.
+     * @param publicKeyFile Файл публичного ключа в формате PEM, общий для всего пакета.
+     * @return Результаты в порядке входной коллекции.
+     * @throws Exception если не удалось прочитать ключ; срок действия и сертификат проверяются для каждого сообщения.
+     */
+    public List<VerificationResult> verifyAll(Collection<? extends Source> sources, File publicKeyFile) throws Exception {
+        List<TrustedKey> trustedKeys = List.of(keyCache.get(publicKeyFile));
+        Source[] items = sources.toArray(new Source[0]);
+        return runBatch(items.length, i -> verifySource(items[i], trustedKeys));
+    }
+
+    /**
+     * Параллельно проверяет пакет файлов в настроенном ForkJoinPool.
+     * Файлы читаются в рабочих потоках; ошибка отдельного файла сохраняется в его результате.
+     *
+     * @param paths Пути к файлам с SOAP-сообщениями.
+     * @param publicKeyFile Файл публичного ключа в формате PEM, общий для всего пакета.
+     * @return Результаты в порядке входного потока.
+     * @throws Exception если не удалось загрузить ключ.
+     */
+    public List<VerificationResult> verifyAll(Stream<Path> paths, File publicKeyFile) throws Exception {
+        return verifyAll(paths, List.of(publicKeyFile));
+    }
+
+    /**
+     * Параллельно проверяет пакет файлов, принимая подпись любого из перечисленных ключей.
+     * Используется, когда отправитель сообщения заранее неизвестен (например, каталог ключей).
+     * Ключи с истекшим или еще не наступившим сроком действия и отклоненные сертификаты пропускаются
+     * при проверке каждого сообщения, как в {@link #verify(byte[], KeyResolver)}; сообщение получает ошибку,
+     * только если не осталось ни одного ключа.
+     *
+     * @param paths Пути к файлам с SOAP-сообщениями.
+     * @param publicKeyFiles Файлы публичных ключей или сертификатов в порядке перебора.
+     * @return Результаты в порядке входного потока.
+     * @throws Exception если не удалось прочитать один из ключей.
+     */
+    public List<VerificationResult> verifyAll(Stream<Path> paths, List<File> publicKeyFiles) throws Exception {
+        if (publicKeyFiles.isEmpty()) {
+            throw new IllegalArgumentException("At least one public key file is required");
+        }
+        List<TrustedKey> trustedKeys = new ArrayList<>(publicKeyFiles.size());
+        for (File publicKeyFile : publicKeyFiles) {
+            trustedKeys.add(keyCache.get(publicKeyFile));
+        }
+        List<Path> items = paths.collect(Collectors.toList());
+        return runBatch(items.size(), i -> verifyPath(items.get(i), trustedKeys));
+    }
+
+    /**
+     * @return Количество загрузок ключа, обслуженных из кеша.
+     */
+    public long keyCacheHitCount() {
+        return keyCache.hitCount();
+    }
+
+    /**
+     * @return Количество загрузок ключа, потребовавших чтения файла.
+     */
+    public long keyCacheMissCount() {
+        return keyCache.missCount();
+    }
+
+    /**
+     * Освобождает парсер, XPath-выражения и Signature, закрепленные за текущим потоком.
+     */
+    public void releaseThreadResources() {
+        resources.remove();
+    }
+
+    /**
+     * Разбирает SOAP-документ из потока байтов.
+     * Кодировка определяется парсером по XML-декларации.
+     * @param soapXml Поток с полным XML-документом SOAP.
+     * @return Разобранный документ.
+     * @throws Exception если возникла ошибка конфигурации парсера или разбора.
+     */
+    Document parse(InputStream soapXml) throws Exception {
+        return resources.get().documentBuilder().parse(parserLimits.limit(soapXml));
+    }
+
+    /**
+     * Извлекает Base64-строку подписи из уже разобранного SOAP-документа.
+     * @param doc Разобранный SOAP-документ.
+     * @return Base64-строка подписи.
+     * @throws Exception Если элемент подписи не найден.
+     */
+    String extractSignatureBase64(Document doc) throws Exception {
+        Element signatureElement = envelopeLocator(doc).signature(doc);
+        String signatureBase64 = signatureElement == null ? "" : signatureElement.getTextContent().trim();
+        if (signatureBase64.isEmpty()) {
+            throw signatureNotFound();
+        }
+        return signatureBase64;
+    }
+
+    /**
+     * Извлекает отправителя из уже разобранного SOAP-документа.
+     * @param doc Разобранный SOAP-документ.
+     * @return Значение элемента отправителя без начальных и конечных пробелов.
+     * @throws Exception Если элемент отправителя не найден или пуст.
+     */
+    String extractSender(Document doc) throws Exception {
+        Element senderElement = envelopeLocator(doc).headerChild(doc, senderElementName);
+        String sender = senderElement == null ? "" : senderElement.getTextContent().trim();
+        if (sender.isEmpty()) {
+            throw new Exception("Sender element not found in SOAP Header at /soap:Envelope/soap:Header/" + senderElementName);
+        }
+        return sender;
+    }
+
+    /**
+     * Разбирает SOAP-документ из строки через Reader, без кодирования в байты.
+     * Ограничение размера сравнивается с длиной строки: в UTF-8 документ занимает не меньше байтов, чем символов.
+     * @param soapXml Полный XML-документ SOAP.
+     * @return Разобранный документ.
+     * @throws Exception если возникла ошибка конфигурации парсера или разбора.
+     */
+    Document parse(String soapXml) throws Exception {
+        parserLimits.checkSize(soapXml.length());
+        return parse(new InputSource(new StringReader(soapXml)));
+    }
+
+    /**
+     * Разбирает SOAP-документ из источника SAX. Размер ограничивается для потока байтов источника.
+     * @param soapXml Источник с полным XML-документом SOAP.
+     * @return Разобранный документ.
+     * @throws Exception если возникла ошибка конфигурации парсера или разбора.
+     */
+    Document parse(InputSource soapXml) throws Exception {
+        if (soapXml.getByteStream() != null) {
+            soapXml.setByteStream(parserLimits.limit(soapXml.getByteStream()));
+        }
+        return resources.get().documentBuilder().parse(soapXml);
+    }
+
+    /**
+     * Верифицирует подпись уже разобранного документа ключами его отправителя.
+     * Ключи с истекшим сроком действия или отклоненным сертификатом пропускаются.
+     *
+     * @param doc Разобранный SOAP-документ.
+     * @param keyResolver Источник ключей по отправителю.
+     * @return true, если подпись действительна хотя бы для одного ключа отправителя.
+     * @throws Exception Если отправитель не найден, неизвестен или ни один его ключ не действителен,
+     *                   либо произошла ошибка при канонизации или верификации.
+     */
+    boolean verify(Document doc, KeyResolver keyResolver) throws Exception {
+        String sender = extractSender(doc);
+        List<TrustedKey> candidates = keyResolver.resolve(sender);
+        if (candidates.isEmpty()) {
+            throw new Exception("No trusted public key for sender: " + sender);
+        }
+        return verify(doc, validKeys(candidates, " for sender " + sender));
+    }
+
+    /**
+     * Отбирает ключи, действительные сейчас: срок действия и, если настроено, цепочка и отзыв сертификата.
+     * @param candidates Ключи-кандидаты в порядке перебора.
+     * @param owner Уточнение для сообщения об ошибке, например " for sender acme", или пустая строка.
+     * @return Действительные ключи в порядке перебора.
+     * @throws Exception если ни один ключ не действителен; причина - отказ последнего ключа.
+     */
+    private List<PublicKey> validKeys(List<TrustedKey> candidates, String owner) throws Exception {
+        long now = System.currentTimeMillis();
+        List<PublicKey> publicKeys = new ArrayList<>(candidates.size());
+        Exception rejection = null;
+        for (TrustedKey candidate : candidates) {
+            try {
+                checkTrusted(candidate, now);
+                publicKeys.add(candidate.getPublicKey());
+            } catch (Exception e) {
+                rejection = e;
+            }
+        }
+        if (publicKeys.isEmpty()) {
+            throw new Exception("No valid public key" + owner + ": " + rejection.getMessage(), rejection);
+        }
+        return publicKeys;
+    }
+
+    /**
+     * Верифицирует подпись уже разобранного документа.
+     * Каноническая форма Body сразу уходит в Signature.update и не собирается в массив.
+     *
+     * @param doc Разобранный SOAP-документ.
+     * @param publicKey Публичный ключ отправителя.
+     * @return true, если подпись действительна, иначе false.
+     * @throws Exception Если произошла ошибка при канонизации или верификации.
+     */
+    boolean verify(Document doc, PublicKey publicKey) throws Exception {
+        String signatureBase64 = extractSignatureBase64(doc);
+        byte[] signatureBytes = Base64.getDecoder().decode(signatureBase64);
+
+        Signature signature = initVerifySignature(publicKey);
+        try (SignatureOutputStream out = new SignatureOutputStream(signature)) {
+            canonicalizeSoapBody(doc, out);
+        }
+        return signature.verify(signatureBytes);
+    }
+
+    /**
+     * Верифицирует подпись уже разобранного документа несколькими ключами по очереди.
+     * Для RSASSA-PKCS1-v1_5 и ключей RSA Body канонизируется сразу в хеш, который вычисляется один раз,
+     * а каждый ключ стоит одной операции с открытым ключом ({@link RsaPkcs1Verifier}).
+     * Для остальных алгоритмов Body канонизируется один раз в массив, который затем проверяется каждым ключом.
+     * Ключ, к которому подпись не подходит (другая длина модуля, ключ другого типа или типа без настроенного
+     * алгоритма), считается несовпавшим
+     * и при одном, и при нескольких кандидатах.
+     *
+     * @param doc Разобранный SOAP-документ.
+     * @param publicKeys Ключи-кандидаты в порядке перебора.
+     * @return true, если подпись действительна хотя бы для одного ключа.
+     * @throws Exception Если произошла ошибка при канонизации или верификации.
+     */
+    boolean verify(Document doc, List<PublicKey> publicKeys) throws Exception {
+        if (publicKeys.size() == 1) {
+            try {
+                return verify(doc, publicKeys.get(0));
+            } catch (SignatureException | InvalidKeyException e) {
+                return false;
+            }
+        }
+        String signatureBase64 = extractSignatureBase64(doc);
+        RsaPkcs1Verifier rsaPkcs1Verifier = signatureAlgorithms.rsaPkcs1Verifier(publicKeys);
+        if (rsaPkcs1Verifier != null) {
+            byte[] signatureBytes = Base64.getDecoder().decode(signatureBase64);
+            MessageDigest digest = resources.get().messageDigest(rsaPkcs1Verifier.digestAlgorithm());
+            // Santuario пишет побайтно, поэтому в MessageDigest байты идут порциями, как в SignatureOutputStream
+            try (OutputStream out = new BufferedOutputStream(new DigestOutputStream(OutputStream.nullOutputStream(), digest),
+                    SignatureOutputStream.CHUNK_SIZE)) {
+                canonicalizeSoapBody(doc, out);
+            }
+            return rsaPkcs1Verifier.verifyAny(signatureBytes, digest.digest(), publicKeys);
+        }
+        byte[] canonicalBytes = canonicalizeSoapBody(doc);
+        for (PublicKey publicKey : publicKeys) {
+            try {
+                if (verifySignature(canonicalBytes, signatureBase64, publicKey)) {
+                    return true;
+                }
+            } catch (SignatureException | InvalidKeyException e) {
+                // Подпись не разбирается для этого ключа (другая длина модуля) или ключ не подходит к алгоритму:
+                // пробуем следующий
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Выполняет канонизацию SOAP Body уже разобранного документа.
+     *
+     * @param doc Разобранный SOAP-документ.
+     * @return Канонизированные байты.
+     * @throws Exception если Body не найден или возникла ошибка канонизации.
+     */
+    byte[] canonicalizeSoapBody(Document doc) throws Exception {
+        ByteArrayOutputStream finalStream = new ByteArrayOutputStream();
+        canonicalizeSoapBody(doc, finalStream);
+        return finalStream.toByteArray();
+    }
+
+    /**
+     * Выполняет канонизацию SOAP Body, имитируя поведение Exchange кода.
+     * Каждый дочерний элемент Body обрабатывается как отдельный документ после удаления пространств имен.
+     * Для {@link Canonicalizer#ALGO_ID_C14N_OMIT_COMMENTS} пространства имен отбрасываются на лету
+     * при обходе исходного DOM ({@link DomCanonicalizer}), для остальных алгоритмов строится копия без них.
+     *
+     * @param doc Разобранный SOAP-документ.
+     * @param out Поток для канонических байтов.
+     * @throws Exception если Body не найден или возникла ошибка канонизации.
+     */
+    void canonicalizeSoapBody(Document doc, OutputStream out) throws Exception {
+        Element bodyNode = envelopeLocator(doc).body(doc);
+        if (bodyNode == null) {
+            throw new Exception("SOAP Body element not found at /soap:Envelope/soap:Body.");
+        }
+
+        if (namespaceFreeCanonicalization) {
+            DomCanonicalizer.canonicalizeChildren(bodyNode, out);
+            return;
+        }
+
+        ProcessingResources threadResources = resources.get();
+        Canonicalizer canon = threadResources.canonicalizer();
+
+        NodeList bodyChildren = bodyNode.getChildNodes();
+        for (int i = 0; i < bodyChildren.getLength(); i++) {
+            Node node = bodyChildren.item(i);
+
+            if (node.getNodeType() == Node.ELEMENT_NODE) {
+                Document tempDoc = XmlSignatureProcessor.removeAllNamespaces(node, threadResources.documentBuilder());
+                canon.canonicalizeSubtree(tempDoc.getDocumentElement(), out);
+            }
+        }
+    }
+
+    /**
+     * Верифицирует подпись над уже канонизированными байтами.
+     *
+     * @param canonicalBytes Канонизированное содержимое SOAP Body.
+     * @param signatureBase64 Base64-строка подписи.
+     * @param publicKey Публичный ключ отправителя.
+     * @return true, если подпись действительна, иначе false.
+     * @throws Exception Если произошла ошибка верификации.
+     */
+    boolean verifySignature(byte[] canonicalBytes, String signatureBase64, PublicKey publicKey) throws Exception {
+        byte[] signatureBytes = Base64.getDecoder().decode(signatureBase64);
+        Signature signature = initVerifySignature(publicKey);
+        signature.update(canonicalBytes);
+        return signature.verify(signatureBytes);
+    }
+
+    /**
+     * Возвращает публичный ключ из кеша верификатора, проверяя срок действия сертификата
+     * и, если настроен {@link CertificateValidator}, его цепочку и отзыв.
+     * @param publicKeyFile Файл публичного ключа, сертификата или хранилища (см. {@link KeyFiles}).
+     * @return Объект PublicKey.
+     * @throws Exception если файл недоступен, ключ недействителен или срок действия сертификата истек.
+     */
+    PublicKey loadPublicKey(File publicKeyFile) throws Exception {
+        TrustedKey trustedKey = keyCache.get(publicKeyFile);
+        checkTrusted(trustedKey, System.currentTimeMillis());
+        return trustedKey.getPublicKey();
+    }
+
+    /**
+     * Проверяет срок действия ключа и, если настроено, цепочку и отзыв его сертификата.
+     * Оба результата берутся из кешей, поэтому проверка при каждом сообщении почти бесплатна.
+     */
+    private void checkTrusted(TrustedKey trustedKey, long timeMillis) throws Exception {
+        trustedKey.checkValidAt(timeMillis);
+        if (certificateValidator != null) {
+            certificateValidator.check(trustedKey, timeMillis);
+        }
+    }
+
+    /**
+     * @return Кеш ключей верификатора.
+     */
+    PublicKeyCache keyCache() {
+        return keyCache;
+    }
+
+    /**
+     * Выбирает локатор по пространству имен корневого элемента уже разобранного документа,
+     * поэтому сообщения разных версий SOAP обрабатываются за один разбор.
+     * @param doc Разобранный SOAP-документ.
+     * @return Локатор версии документа или локатор по умолчанию для неизвестного пространства имен.
+     */
+    private EnvelopeLocator envelopeLocator(Document doc) {
+        Element root = doc.getDocumentElement();
+        EnvelopeLocator locator = root == null ? null : envelopeLocators.get(root.getNamespaceURI());
+        return locator != null ? locator : defaultEnvelopeLocator;
+    }
+
+    /**
+     * Инициализирует Signature текущего потока для проверки подписи алгоритмом, выбранным для ключа.
+     * Для ключа RSASSA-PSS с собственными параметрами создается отдельный Signature: параметры
+     * закреплены за ключом, а Signature потока после такого ключа не принял бы параметры алгоритма.
+     * @param publicKey Публичный ключ отправителя.
+     * @return Инициализированный для проверки объект Signature.
+     * @throws Exception если алгоритм недоступен или ключ недействителен.
+     */
+    private Signature initVerifySignature(PublicKey publicKey) throws Exception {
+        SignatureAlgorithms.Entry algorithm = signatureAlgorithms.select(publicKey);
+        AlgorithmParameterSpec keyParameters = algorithm.keyParameters(publicKey);
+        if (keyParameters != null) {
+            Signature signature = algorithm.newSignature(keyParameters);
+            signature.initVerify(publicKey);
+            return signature;
+        }
+        ProcessingResources threadResources = resources.get();
+        Signature signature = threadResources.signature(algorithm);
+        try {
+            signature.initVerify(publicKey);
+        } catch (InvalidKeyException e) {
+            // Signature с отложенным выбором провайдера после отказа не принимает и подходящие ключи
+            threadResources.discardSignature(algorithm);
+            throw e;
+        }
+        return signature;
+    }
+
+    private VerificationResult verifySource(Source source, List<TrustedKey> trustedKeys) {
+        long start = System.nanoTime();
+        try {
+            Document doc;
+            if (source instanceof DOMSource) {
+                Node node = ((DOMSource) source).getNode();
+                doc = node instanceof Document ? (Document) node : node.getOwnerDocument();
+            } else {
+                InputSource inputSource = SAXSource.sourceToInputSource(source);
+                if (inputSource == null) {
+                    throw new IllegalArgumentException("Unsupported source type: " + source.getClass().getName());
+                }
+                doc = parse(inputSource);
+            }
+            long parsed = System.nanoTime();
+            boolean valid = verify(doc, validKeys(trustedKeys, ""));
+            return VerificationResult.completed(source.getSystemId(), valid, parsed - start, System.nanoTime() - parsed);
+        } catch (Exception e) {
+            return VerificationResult.failed(source.getSystemId(), e, System.nanoTime() - start);
+        }
+    }
+
+    private VerificationResult verifyPath(Path path, List<TrustedKey> trustedKeys) {
+        long start = System.nanoTime();
+        try (InputStream in = Files.newInputStream(path)) {
+            Document doc = parse(in);
+            long parsed = System.nanoTime();
+            boolean valid = verify(doc, validKeys(trustedKeys, ""));
+            return VerificationResult.completed(path.toString(), valid, parsed - start, System.nanoTime() - parsed);
+        } catch (Exception e) {
+            return VerificationResult.failed(path.toString(), e, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Выполняет задачи пакета в ForkJoinPool, разбивая диапазон индексов пополам до отдельных сообщений.
+     * Каждое сообщение достаточно тяжелое, поэтому порог разбиения равен одному элементу.
+     */
+    private List<VerificationResult> runBatch(int size, BatchItem item) {
+        VerificationResult[] results = new VerificationResult[size];
+        if (size > 0) {
+            forkJoinPool.invoke(new BatchTask(item, results, 0, size));
+        }
+        return new ArrayList<>(Arrays.asList(results));
+    }
+
+    /**
+     * Проверка одного элемента пакета по его индексу. Не бросает исключений.
+     */
+    private interface BatchItem {
+        VerificationResult verify(int index);
+    }
+
+    private static final class BatchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final BatchItem item;
+        private final VerificationResult[] results;
+        private final int from;
+        private final int to;
+
+        BatchTask(BatchItem item, VerificationResult[] results, int from, int to) {
+            this.item = item;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                results[from] = item.verify(from);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new BatchTask(item, results, from, middle), new BatchTask(item, results, middle, to));
+        }
+    }
+
+    private void requireStreamingSupport() {
+        if (!namespaceFreeCanonicalization) {
+            throw new UnsupportedOperationException("Streaming canonicalization supports only "
+                    + Canonicalizer.ALGO_ID_C14N_OMIT_COMMENTS + ", configured: " + canonicalizationAlgorithm);
+        }
+    }
+
+    private Exception signatureNotFound() {
+        return new Exception("Signature element not found in SOAP Header at " + signatureXPath);
+    }
+
+    /**
+     * Построитель {@link SignatureVerifier}. Не потокобезопасен; каждый вызов {@link #build()}
+     * создает независимый верификатор со своим кешем ключей.
+     */
+    public static final class Builder {
+
+        private List<String> soapNamespaces = namespaces(SoapVersion.values());
+        private String signatureElementName = "Signature";
+        private String senderElementName = "Sender";
+        private String canonicalizationAlgorithm = Canonicalizer.ALGO_ID_C14N_OMIT_COMMENTS;
+        /**
+         * Алгоритм для всех ключей или null, если алгоритм выбирается по типу ключа.
+         */
+        private String signatureAlgorithm;
+        private AlgorithmParameterSpec signatureParameters;
+        private SignatureAlgorithm rsaSignatureAlgorithm = SignatureAlgorithm.RSA_SHA512;
+        private SignatureAlgorithm ecSignatureAlgorithm = SignatureAlgorithm.ECDSA_SHA256;
+        private String signatureProvider;
+        private int keyCacheSize = PublicKeyCache.DEFAULT_MAX_ENTRIES;
+        private char[] keyStorePassword;
+        private CertificateValidator certificateValidator;
+        private ForkJoinPool forkJoinPool = ForkJoinPool.commonPool();
+        private boolean preScreen = true;
+        private long maxDocumentBytes;
+        private int maxElementDepth = 1000;
+        private int maxAttributes = 10_000;
+        private int maxEntityExpansions = 64_000;
+        private boolean allowDoctype;
+
+        private Builder() {
+        }
+
+        /**
+         * Принимать только конверты с указанным пространством имен, например нестандартным.
+         * @param soapNamespace Пространство имен элементов Envelope, Header и Body.
+         * @return Этот построитель.
+         */
+        public Builder soapNamespace(String soapNamespace) {
+            this.soapNamespaces = List.of(Objects.requireNonNull(soapNamespace, "soapNamespace"));
+            return this;
+        }
+
+        /**
+         * Принимаемые версии SOAP; по умолчанию все из {@link SoapVersion}.
+         * Версия каждого сообщения определяется по пространству имен корневого Envelope.
+         * @param soapVersions Версии SOAP, хотя бы одна.
+         * @return Этот построитель.
+         */
+        public Builder soapVersions(SoapVersion... soapVersions) {
+            if (soapVersions.length == 0) {
+                throw new IllegalArgumentException("At least one SOAP version is required");
+            }
+            this.soapNamespaces = namespaces(soapVersions);
+            return this;
+        }
+
+        private static List<String> namespaces(SoapVersion... soapVersions) {
+            return Arrays.stream(soapVersions).map(SoapVersion::getNamespace).distinct().collect(Collectors.toList());
+        }
+
+        /**
+         * @param signatureElementName Локальное имя элемента подписи в Header (без пространства имен).
+         * @return Этот построитель.
+         */
+        public Builder signatureElementName(String signatureElementName) {
+            this.signatureElementName = requireElementName(signatureElementName, "signature");
+            return this;
+        }
+
+        /**
+         * Элемент SOAP Header, значение которого передается в {@link KeyResolver}; по умолчанию Sender.
+         * @param senderElementName Локальное имя элемента отправителя в Header (без пространства имен).
+         * @return Этот построитель.
+         */
+        public Builder senderElementName(String senderElementName) {
+            this.senderElementName = requireElementName(senderElementName, "sender");
+            return this;
+        }
+
+        private static String requireElementName(String elementName, String role) {
+            Objects.requireNonNull(elementName, role + "ElementName");
+            boolean validName = !elementName.isEmpty() && elementName.chars()
+                    .allMatch(c -> Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '.');
+            if (!validName) {
+                throw new IllegalArgumentException("Invalid " + role + " element name: " + elementName);
+            }
+            return elementName;
+        }
+
+        /**
+         * @param canonicalizationAlgorithm Идентификатор алгоритма канонизации Santuario.
+         * @return Этот построитель.
+         */
+        public Builder canonicalizationAlgorithm(String canonicalizationAlgorithm) {
+            this.canonicalizationAlgorithm = Objects.requireNonNull(canonicalizationAlgorithm, "canonicalizationAlgorithm");
+            return this;
+        }
+
+        /**
+         * Задает алгоритм подписи для всех ключей вместо выбора по типу ключа.
+         * @param signatureAlgorithm Имя алгоритма подписи JCA без параметров, например SHA512withRSA.
+         * @return Этот построитель.
+         */
+        public Builder signatureAlgorithm(String signatureAlgorithm) {
+            this.signatureAlgorithm = Objects.requireNonNull(signatureAlgorithm, "signatureAlgorithm");
+            this.signatureParameters = null;
+            return this;
+        }
+
+        /**
+         * Задает алгоритм подписи для всех ключей вместо выбора по типу ключа.
+         * @param signatureAlgorithm Алгоритм подписи.
+         * @return Этот построитель.
+         */
+        public Builder signatureAlgorithm(SignatureAlgorithm signatureAlgorithm) {
+            Objects.requireNonNull(signatureAlgorithm, "signatureAlgorithm");
+            this.signatureAlgorithm = signatureAlgorithm.getJcaName();
+            this.signatureParameters = signatureAlgorithm.parameters();
+            return this;
+        }
+
+        /**
+         * Алгоритм для ключей RSA, когда алгоритм не задан для всех ключей.
+         * Ключи RSASSA-PSS проверяются этим алгоритмом, только если он PSS, иначе {@link SignatureAlgorithm#RSA_PSS_SHA256};
+         * параметры PSS, записанные в ключе, имеют приоритет.
+         * @param rsaSignatureAlgorithm Алгоритм RSA, по умолчанию {@link SignatureAlgorithm#RSA_SHA512}.
+         * @return Этот построитель.
+         */
+        public Builder rsaSignatureAlgorithm(SignatureAlgorithm rsaSignatureAlgorithm) {
+            this.rsaSignatureAlgorithm = requireKeyType(rsaSignatureAlgorithm, SignatureAlgorithm.KeyType.RSA, "rsaSignatureAlgorithm");
+            return this;
+        }
+
+        /**
+         * Алгоритм для ключей EC, когда алгоритм не задан для всех ключей.
+         * @param ecSignatureAlgorithm Алгоритм ECDSA, по умолчанию {@link SignatureAlgorithm#ECDSA_SHA256}.
+         * @return Этот построитель.
+         */
+        public Builder ecSignatureAlgorithm(SignatureAlgorithm ecSignatureAlgorithm) {
+            this.ecSignatureAlgorithm = requireKeyType(ecSignatureAlgorithm, SignatureAlgorithm.KeyType.EC, "ecSignatureAlgorithm");
+            return this;
+        }
+
+        /**
+         * @param signatureProvider Имя провайдера JCA для всех алгоритмов подписи или null для провайдера по умолчанию.
+         * @return Этот построитель.
+         */
+        public Builder signatureProvider(String signatureProvider) {
+            this.signatureProvider = signatureProvider;
+            return this;
+        }
+
+        private static SignatureAlgorithm requireKeyType(SignatureAlgorithm algorithm, SignatureAlgorithm.KeyType keyType, String name) {
+            Objects.requireNonNull(algorithm, name);
+            if (algorithm.keyType() != keyType) {
+                throw new IllegalArgumentException(name + " must be an " + keyType + " algorithm: " + algorithm);
+            }
+            return algorithm;
+        }
+
+        /**
+         * @param keyCacheSize Максимальное количество ключей в кеше верификатора.
+         * @return Этот построитель.
+         */
+        public Builder keyCacheSize(int keyCacheSize) {
+            if (keyCacheSize < 1) {
+                throw new IllegalArgumentException("keyCacheSize must be positive: " + keyCacheSize);
+            }
+            this.keyCacheSize = keyCacheSize;
+            return this;
+        }
+
+        /**
+         * Пароль файлов PKCS#12 и JKS, переданных вместо файла ключа. Без пароля хранилище
+         * читается без проверки целостности, зашифрованные сертификаты при этом недоступны.
+         * @param keyStorePassword Пароль хранилищ или null.
+         * @return Этот построитель.
+         */
+        public Builder keyStorePassword(char[] keyStorePassword) {
+            this.keyStorePassword = keyStorePassword == null ? null : keyStorePassword.clone();
+            return this;
+        }
+
+        /**
+         * Проверка цепочки и отзыва сертификатов ключей при каждой проверке подписи; по умолчанию отключена
+         * и проверяется только срок действия сертификата.
+         * @param certificateValidator Проверка по локальным доверенным сертификатам и CRL или null.
+         * @return Этот построитель.
+         */
+        public Builder certificateValidator(CertificateValidator certificateValidator) {
+            this.certificateValidator = certificateValidator;
+            return this;
+        }
+
+        /**
+         * @param forkJoinPool Пул для пакетной проверки; по умолчанию общий пул.
+         *                     Жизненным циклом переданного пула управляет вызывающий код.
+         * @return Этот построитель.
+         */
+        public Builder forkJoinPool(ForkJoinPool forkJoinPool) {
+            this.forkJoinPool = Objects.requireNonNull(forkJoinPool, "forkJoinPool");
+            return this;
+        }
+
+        /**
+         * Предварительная проверка байтов сообщения (см. {@link VerificationException.Reason})
+         * для точек входа с byte[] и ByteBuffer; включена по умолчанию.
+         * @param preScreen false, чтобы всегда выполнять полный разбор.
+         * @return Этот построитель.
+         */
+        public Builder preScreen(boolean preScreen) {
+            this.preScreen = preScreen;
+            return this;
+        }
+
+        /**
+         * @param maxDocumentBytes Максимальный размер документа в байтах; 0 (по умолчанию) снимает ограничение.
+         * @return Этот построитель.
+         */
+        public Builder maxDocumentBytes(long maxDocumentBytes) {
+            requireNonNegative(maxDocumentBytes, "maxDocumentBytes");
+            this.maxDocumentBytes = maxDocumentBytes;
+            return this;
+        }
+
+        /**
+         * @param maxElementDepth Максимальная глубина вложенности элементов; по умолчанию 1000, 0 снимает ограничение.
+         * @return Этот построитель.
+         */
+        public Builder maxElementDepth(int maxElementDepth) {
+            requireNonNegative(maxElementDepth, "maxElementDepth");
+            this.maxElementDepth = maxElementDepth;
+            return this;
+        }
+
+        /**
+         * @param maxAttributes Максимальное количество атрибутов одного элемента; по умолчанию 10000, 0 снимает ограничение.
+         * @return Этот построитель.
+         */
+        public Builder maxAttributes(int maxAttributes) {
+            requireNonNegative(maxAttributes, "maxAttributes");
+            this.maxAttributes = maxAttributes;
+            return this;
+        }
+
+        /**
+         * @param maxEntityExpansions Максимальное количество раскрытий сущностей в документе;
+         *                            по умолчанию 64000, 0 снимает ограничение.
+         * @return Этот построитель.
+         */
+        public Builder maxEntityExpansions(int maxEntityExpansions) {
+            requireNonNegative(maxEntityExpansions, "maxEntityExpansions");
+            this.maxEntityExpansions = maxEntityExpansions;
+            return this;
+        }
+
+        /**
+         * SOAP запрещает DOCTYPE в сообщениях, поэтому по умолчанию документ с DOCTYPE отклоняется.
+         * Внешние DTD и внешние сущности не загружаются и при разрешенном DOCTYPE,
+         * внутренние сущности раскрываются в пределах {@link #maxEntityExpansions(int)}.
+         * @param allowDoctype true, чтобы принимать внутреннее подмножество DTD.
+         * @return Этот построитель.
+         */
+        public Builder allowDoctype(boolean allowDoctype) {
+            this.allowDoctype = allowDoctype;
+            return this;
+        }
+
+        private static void requireNonNegative(long value, String name) {
+            if (value < 0) {
+                throw new IllegalArgumentException(name + " must not be negative: " + value);
+            }
+        }
+
+        /**
+         * Создает верификатор. Алгоритмы проверяются сразу, чтобы ошибка конфигурации
+         * обнаруживалась при старте, а не на первом сообщении.
+         * @return Новый верификатор.
+         * @throws IllegalStateException если алгоритм канонизации или подписи недоступен.
+         */
+        public SignatureVerifier build() {
+            SignatureAlgorithms signatureAlgorithms = signatureAlgorithm != null
+                    ? new SignatureAlgorithms(signatureAlgorithm, signatureParameters, signatureProvider)
+                    : new SignatureAlgorithms(rsaSignatureAlgorithm, ecSignatureAlgorithm, signatureProvider);
+            try {
+                Canonicalizer.getInstance(canonicalizationAlgorithm);
+                signatureAlgorithms.checkAvailable();
+            } catch (Exception e) {
+                throw new IllegalStateException("Unsupported verifier configuration: " + e.getMessage(), e);
+            }
+            return new SignatureVerifier(this, signatureAlgorithms);
+        }
+    }
+}
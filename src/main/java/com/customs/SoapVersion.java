@@ -0,0 +1,36 @@
+package com.customs;
+
+/**
+ * Поддерживаемые версии SOAP-конверта и их пространства имен.
+ * Версия сообщения определяется по пространству имен корневого элемента Envelope.
+ */
+public enum SoapVersion {
+
+    /**
+     * Черновик SOAP 1.2 от июня 2001 года, используемый Exchange-кодом.
+     */
+    SOAP_2001_06("http://www.w3.org/2001/06/soap-envelope"),
+
+    /**
+     * SOAP 1.1.
+     */
+    SOAP_11("http://schemas.xmlsoap.org/soap/envelope/"),
+
+    /**
+     * SOAP 1.2 (рекомендация W3C).
+     */
+    SOAP_12("http://www.w3.org/2003/05/soap-envelope");
+
+    private final String namespace;
+
+    SoapVersion(String namespace) {
+        this.namespace = namespace;
+    }
+
+    /**
+     * @return Пространство имен элементов Envelope, Header и Body этой версии.
+     */
+    public String getNamespace() {
+        return namespace;
+    }
+}
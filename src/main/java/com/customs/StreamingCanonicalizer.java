@@ -0,0 +1,284 @@
+package com.customs;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Потоковая канонизация SOAP Body на основе StAX без построения DOM.
+ * Выдает те же байты, что и {@link XmlSignatureProcessor#canonicalizeSoapBody(String)}:
+ * каждый дочерний элемент Body сериализуется без префиксов, атрибутов xmlns и атрибутов с пространством имен.
+ * Потребление памяти зависит от глубины вложенности элементов, а не от размера документа.
+ * Экземпляр неизменяем и может использоваться из нескольких потоков.
+ */
+final class StreamingCanonicalizer {
+
+    private final Set<String> soapNamespaces;
+    private final String signatureElementName;
+    private final ParserLimits limits;
+    private final XMLInputFactory inputFactory;
+
+    /**
+     * @param soapNamespaces Допустимые пространства имен конверта; Header и Body ищутся
+     *                       в пространстве имен корневого Envelope конкретного сообщения.
+     * @param signatureElementName Локальное имя элемента подписи в Header.
+     * @param limits Ограничения разбора.
+     */
+    StreamingCanonicalizer(Set<String> soapNamespaces, String signatureElementName, ParserLimits limits) {
+        this.soapNamespaces = soapNamespaces;
+        this.signatureElementName = signatureElementName;
+        this.limits = limits;
+        this.inputFactory = createInputFactory(limits);
+    }
+
+    /**
+     * Создает фабрику StAX с настройками, совпадающими с DOM-парсером:
+     * текст не склеивается, ссылки на сущности раскрываются, действуют те же ограничения ресурсов.
+     * Берется встроенная реализация JDK, а не найденная на classpath (например, Woodstox из зависимостей xmlsec):
+     * ограничения jdk.xml.* и поведение при канонизации рассчитаны на нее.
+     * Настроенная фабрика потокобезопасна при создании читателей.
+     * @param limits Ограничения разбора.
+     * @return Настроенная XMLInputFactory.
+     */
+    private static XMLInputFactory createInputFactory(ParserLimits limits) {
+        XMLInputFactory factory = XMLInputFactory.newDefaultFactory();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, Boolean.TRUE);
+        limits.configure(factory);
+        return factory;
+    }
+
+    /**
+     * Канонизирует дочерние элементы /soap:Envelope/soap:Body и пишет результат в поток.
+     * Попутно собирает текст первого элемента подписи в /soap:Envelope/soap:Header,
+     * поэтому проверка подписи обходится одним проходом по документу.
+     * Документ дочитывается до конца, чтобы ошибки формата обнаруживались так же, как при DOM-разборе.
+     *
+     * @param soapXml Поток с полным XML-документом SOAP.
+     * @param out Поток для канонических байтов.
+     * @return Текст элемента Signature без обрезки пробелов или пустая строка, если элемента нет.
+     * @throws Exception если Body не найден или возникла ошибка разбора.
+     */
+    String canonicalizeSoapBody(InputStream soapXml, OutputStream out) throws Exception {
+        XMLStreamReader reader = inputFactory.createXMLStreamReader(limits.limit(soapXml));
+        try {
+            int event;
+            while ((event = reader.next()) != XMLStreamConstants.START_ELEMENT) {
+                if (event == XMLStreamConstants.DTD) {
+                    limits.checkDoctype();
+                    checkDoctype(reader.getText());
+                }
+            }
+            String soapNamespace = reader.getNamespaceURI();
+            if (!"Envelope".equals(reader.getLocalName()) || !soapNamespaces.contains(soapNamespace)) {
+                throw bodyNotFound();
+            }
+            boolean bodyFound = false;
+            String signature = null;
+            C14nWriter writer = new C14nWriter(out);
+            while (reader.hasNext()) {
+                event = reader.next();
+                if (event == XMLStreamConstants.END_ELEMENT) {
+                    // Конец Envelope
+                    break;
+                }
+                if (event != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+                if (!bodyFound && isSoapElement(reader, soapNamespace, "Body")) {
+                    bodyFound = true;
+                    writeBodyChildren(reader, writer);
+                } else if (signature == null && isSoapElement(reader, soapNamespace, "Header")) {
+                    signature = readSignature(reader);
+                } else {
+                    skipSubtree(reader);
+                }
+            }
+            while (reader.hasNext()) {
+                reader.next();
+            }
+            if (!bodyFound) {
+                throw bodyNotFound();
+            }
+            writer.flush();
+            return signature == null ? "" : signature;
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * StAX не сообщает атрибуты со значениями по умолчанию из DTD, а DOM-парсер их добавляет.
+     * Такие документы (и документы с внешним DTD, содержимое которого неизвестно) отклоняются,
+     * чтобы потоковый путь никогда не выдавал байты, отличные от DOM-пути.
+     * @param doctype Текст объявления DOCTYPE.
+     * @throws Exception если DTD может влиять на набор атрибутов.
+     */
+    private static void checkDoctype(String doctype) throws Exception {
+        int subset = doctype.indexOf('[');
+        String externalId = subset < 0 ? doctype : doctype.substring(0, subset);
+        if (!doctype.startsWith("<!DOCTYPE")
+                || externalId.contains("SYSTEM") || externalId.contains("PUBLIC")
+                || doctype.contains("<!ATTLIST")) {
+            throw new Exception("Streaming canonicalization does not support external DTD subsets or DTD attribute defaults.");
+        }
+    }
+
+    private static boolean isSoapElement(XMLStreamReader reader, String soapNamespace, String localName) {
+        return localName.equals(reader.getLocalName())
+                && soapNamespace.equals(reader.getNamespaceURI());
+    }
+
+    private static Exception bodyNotFound() {
+        return new Exception("SOAP Body element not found at /soap:Envelope/soap:Body.");
+    }
+
+    /**
+     * Ищет среди дочерних элементов Header элемент подписи без пространства имен
+     * и возвращает его строковое значение, как XPath string().
+     * Возвращается, когда читатель стоит на закрывающем теге Header.
+     * @return Текст подписи или null, если в этом Header подписи нет.
+     */
+    private String readSignature(XMLStreamReader reader) throws XMLStreamException {
+        String signature = null;
+        while (true) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                return signature;
+            }
+            if (event != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+            String namespace = reader.getNamespaceURI();
+            if (signature == null && signatureElementName.equals(reader.getLocalName())
+                    && (namespace == null || namespace.isEmpty())) {
+                signature = readText(reader);
+            } else {
+                skipSubtree(reader);
+            }
+        }
+    }
+
+    /**
+     * Собирает текст всех потомков элемента, на открывающем теге которого стоит читатель.
+     */
+    private static String readText(XMLStreamReader reader) throws XMLStreamException {
+        StringBuilder text = new StringBuilder();
+        int depth = 1;
+        while (depth > 0) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    depth++;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    depth--;
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                    break;
+                default:
+                    break;
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Сериализует дочерние элементы Body; текст и комментарии на уровне Body пропускаются.
+     * Возвращается, когда читатель стоит на закрывающем теге Body.
+     */
+    private static void writeBodyChildren(XMLStreamReader reader, C14nWriter writer) throws XMLStreamException, IOException {
+        while (true) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                return;
+            }
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                writeSubtree(reader, writer);
+            }
+        }
+    }
+
+    /**
+     * Сериализует элемент, на открывающем теге которого стоит читатель, вместе с потомками.
+     * Стек имен хранит только текущую ветку, поэтому память ограничена глубиной вложенности.
+     */
+    private static void writeSubtree(XMLStreamReader reader, C14nWriter writer) throws XMLStreamException, IOException {
+        String[] names = new String[16];
+        String[] attrNames = new String[8];
+        String[] attrValues = new String[8];
+        int depth = 0;
+        int event = XMLStreamConstants.START_ELEMENT;
+        while (true) {
+            switch (event) {
+                case XMLStreamConstants.START_ELEMENT: {
+                    int count = 0;
+                    int total = reader.getAttributeCount();
+                    if (total > attrNames.length) {
+                        attrNames = new String[total];
+                        attrValues = new String[total];
+                    }
+                    for (int i = 0; i < total; i++) {
+                        String namespace = reader.getAttributeNamespace(i);
+                        String attrName = reader.getAttributeLocalName(i);
+                        if ((namespace == null || namespace.isEmpty()) && !attrName.startsWith("xmlns")) {
+                            attrNames[count] = attrName;
+                            attrValues[count] = reader.getAttributeValue(i);
+                            count++;
+                        }
+                    }
+                    String name = reader.getLocalName();
+                    writer.startElement(name, attrNames, attrValues, count);
+                    if (depth == names.length) {
+                        names = Arrays.copyOf(names, depth * 2);
+                    }
+                    names[depth++] = name;
+                    break;
+                }
+                case XMLStreamConstants.END_ELEMENT:
+                    writer.endElement(names[--depth]);
+                    names[depth] = null;
+                    if (depth == 0) {
+                        return;
+                    }
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    writer.text(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                    break;
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    writer.processingInstruction(reader.getPITarget(), reader.getPIData());
+                    break;
+                default:
+                    // Комментарии в каноническую форму не попадают
+                    break;
+            }
+            event = reader.next();
+        }
+    }
+
+    /**
+     * Пропускает элемент, на открывающем теге которого стоит читатель.
+     */
+    private static void skipSubtree(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+}
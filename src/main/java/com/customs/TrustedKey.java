@@ -0,0 +1,97 @@
+package com.customs;
+
+import java.security.PublicKey;
+import java.security.cert.X509Certificate;
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * Ключ проверки вместе со сроком действия, извлеченными один раз при загрузке.
+ * Для сертификата срок берется из notBefore/notAfter, для ключа без сертификата срок не ограничен.
+ * Проверка срока при каждом сообщении сводится к сравнению двух чисел, сертификат повторно не разбирается.
+ * Экземпляр неизменяем.
+ */
+public final class TrustedKey {
+
+    private final PublicKey publicKey;
+    private final X509Certificate certificate;
+    private final long notBefore;
+    private final long notAfter;
+
+    private TrustedKey(PublicKey publicKey, X509Certificate certificate, long notBefore, long notAfter) {
+        this.publicKey = publicKey;
+        this.certificate = certificate;
+        this.notBefore = notBefore;
+        this.notAfter = notAfter;
+    }
+
+    /**
+     * @param publicKey Ключ без сертификата.
+     * @return Ключ без ограничения срока действия.
+     */
+    public static TrustedKey of(PublicKey publicKey) {
+        return new TrustedKey(Objects.requireNonNull(publicKey, "publicKey"), null, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param certificate Сертификат X.509.
+     * @return Ключ сертификата со сроком действия сертификата.
+     */
+    public static TrustedKey of(X509Certificate certificate) {
+        return new TrustedKey(certificate.getPublicKey(), certificate,
+                certificate.getNotBefore().getTime(), certificate.getNotAfter().getTime());
+    }
+
+    /**
+     * @return Публичный ключ.
+     */
+    public PublicKey getPublicKey() {
+        return publicKey;
+    }
+
+    /**
+     * @return Сертификат ключа или null, если ключ загружен без сертификата.
+     */
+    public X509Certificate getCertificate() {
+        return certificate;
+    }
+
+    /**
+     * @return Начало срока действия, мс от эпохи; Long.MIN_VALUE для ключа без сертификата.
+     */
+    public long getNotBefore() {
+        return notBefore;
+    }
+
+    /**
+     * @return Конец срока действия включительно, мс от эпохи; Long.MAX_VALUE для ключа без сертификата.
+     */
+    public long getNotAfter() {
+        return notAfter;
+    }
+
+    /**
+     * @param timeMillis Момент времени, мс от эпохи.
+     * @return true, если ключ действует в этот момент.
+     */
+    public boolean isValidAt(long timeMillis) {
+        return timeMillis >= notBefore && timeMillis <= notAfter;
+    }
+
+    /**
+     * @param timeMillis Момент времени, мс от эпохи.
+     * @throws Exception если срок действия сертификата в этот момент не наступил или истек.
+     */
+    void checkValidAt(long timeMillis) throws Exception {
+        if (timeMillis > notAfter) {
+            throw new Exception("Certificate " + subject() + " expired at " + Instant.ofEpochMilli(notAfter));
+        }
+        if (timeMillis < notBefore) {
+            throw new Exception("Certificate " + subject() + " is not valid before " + Instant.ofEpochMilli(notBefore));
+        }
+    }
+
+    private String subject() {
+        return certificate == null ? "" : "'" + certificate.getSubjectX500Principal().getName() + "'";
+    }
+}
@@ -0,0 +1,42 @@
+package com.customs;
+
+/**
+ * Сообщение отклонено до полного разбора: предварительная проверка байтов нашла нарушение
+ * необходимого условия, при котором полный путь проверки тоже не признал бы подпись действительной.
+ */
+public final class VerificationException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Причина отклонения.
+     */
+    public enum Reason {
+        /** Корневой элемент не Envelope. */
+        ENVELOPE_MISSING,
+        /** В Header нет элемента подписи или он пуст. */
+        SIGNATURE_MISSING,
+        /** В Envelope нет Body. */
+        BODY_MISSING,
+        /** Длина подписи после Base64 не равна длине модуля RSA-ключа. */
+        SIGNATURE_LENGTH_MISMATCH
+    }
+
+    private final Reason reason;
+
+    /**
+     * @param reason Причина отклонения.
+     * @param message Описание для журнала.
+     */
+    VerificationException(Reason reason, String message) {
+        super(message);
+        this.reason = reason;
+    }
+
+    /**
+     * @return Причина отклонения.
+     */
+    public Reason getReason() {
+        return reason;
+    }
+}
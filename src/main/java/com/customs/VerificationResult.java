@@ -0,0 +1,102 @@
+package com.customs;
+
+/**
+ * Результат проверки одного сообщения в пакетной верификации.
+ * Ошибка обработки сообщения сохраняется в результате и не прерывает весь пакет.
+ */
+public final class VerificationResult {
+
+    private final String source;
+    private final boolean valid;
+    private final Exception error;
+    private final long parseNanos;
+    private final long verifyNanos;
+    private final long elapsedNanos;
+
+    private VerificationResult(String source, boolean valid, Exception error,
+                               long parseNanos, long verifyNanos, long elapsedNanos) {
+        this.source = source;
+        this.valid = valid;
+        this.error = error;
+        this.parseNanos = parseNanos;
+        this.verifyNanos = verifyNanos;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @param source Идентификатор сообщения (путь или systemId).
+     * @param valid Итог проверки подписи.
+     * @param parseNanos Время чтения и разбора документа.
+     * @param verifyNanos Время канонизации, хеширования и проверки подписи.
+     * @return Результат завершенной проверки.
+     */
+    static VerificationResult completed(String source, boolean valid, long parseNanos, long verifyNanos) {
+        return new VerificationResult(source, valid, null, parseNanos, verifyNanos, parseNanos + verifyNanos);
+    }
+
+    /**
+     * @param source Идентификатор сообщения (путь или systemId).
+     * @param error Ошибка, из-за которой проверка не была выполнена.
+     * @param elapsedNanos Время до возникновения ошибки.
+     * @return Результат с ошибкой; подпись считается недействительной.
+     */
+    static VerificationResult failed(String source, Exception error, long elapsedNanos) {
+        return new VerificationResult(source, false, error, 0, 0, elapsedNanos);
+    }
+
+    /**
+     * @return Идентификатор сообщения или null, если источник его не содержит.
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * @return true, если подпись проверена и действительна.
+     */
+    public boolean isValid() {
+        return valid;
+    }
+
+    /**
+     * @return Ошибка обработки или null, если проверка завершилась.
+     */
+    public Exception getError() {
+        return error;
+    }
+
+    /**
+     * @return true, если при обработке сообщения произошла ошибка.
+     */
+    public boolean hasError() {
+        return error != null;
+    }
+
+    /**
+     * @return Время чтения и разбора документа в наносекундах; 0 для уже разобранного документа или при ошибке.
+     */
+    public long getParseNanos() {
+        return parseNanos;
+    }
+
+    /**
+     * @return Время канонизации, хеширования и проверки подписи в наносекундах; 0 при ошибке.
+     */
+    public long getVerifyNanos() {
+        return verifyNanos;
+    }
+
+    /**
+     * @return Время обработки сообщения в наносекундах.
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "VerificationResult{source=" + source + ", valid=" + valid
+                + (error != null ? ", error=" + error.getMessage() : "")
+                + ", elapsedNanos=" + elapsedNanos + '}';
+    }
+}
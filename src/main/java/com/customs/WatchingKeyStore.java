@@ -0,0 +1,204 @@
+package com.customs;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * Хранилище ключей контрагентов, которое следит за каталогом файлов ключей через {@link WatchService}
+ * и подхватывает смену ключей без перезапуска. Имена файлов трактуются как в {@link PemDirectoryKeyIndex}.
+ *
+ * <p>Фоновый поток-демон перечитывает только измененные файлы, строит новую неизменяемую таблицу
+ * и подменяет ее одной записью volatile-поля; потоки проверки никогда не ждут чтения с диска.
+ * События копятся, пока каталог не затихнет на {@link #SETTLE_MILLIS} мс, чтобы не разбирать
+ * файл посреди записи. При локальной файловой системе с уведомлениями (inotify и аналоги)
+ * новый ключ начинает действовать в пределах секунды; реализации WatchService с опросом могут запаздывать.
+ *
+ * <p>Файл, который не удалось разобрать, сохраняет прежний ключ (или остается без ключа, если он новый),
+ * ошибка доступна через {@link #lastError()}. Удаленный файл сразу перестает давать ключ.
+ */
+public final class WatchingKeyStore implements KeyResolver, Closeable {
+
+    /**
+     * Пауза без событий, после которой накопленные изменения применяются.
+     */
+    static final long SETTLE_MILLIS = 100;
+
+    private final Path directory;
+    private final char[] keyStorePassword;
+    private final WatchService watchService;
+    private final Thread watcher;
+    /**
+     * Ключи по имени файла; изменяется только потоком наблюдения после запуска.
+     */
+    private final SortedMap<String, List<TrustedKey>> keysByFile;
+    private volatile Map<String, List<TrustedKey>> keys;
+    private volatile long generation;
+    private volatile Exception lastError;
+
+    /**
+     * Загружает ключи каталога и запускает наблюдение за ним.
+     * @param directory Каталог с файлами ключей.
+     * @throws Exception если каталог недоступен или один из файлов не содержит ключа.
+     */
+    public WatchingKeyStore(Path directory) throws Exception {
+        this(directory, null);
+    }
+
+    /**
+     * Загружает ключи каталога и запускает наблюдение за ним.
+     * @param directory Каталог с файлами ключей.
+     * @param keyStorePassword Пароль хранилищ PKCS#12 и JKS или null.
+     * @throws Exception если каталог недоступен или один из файлов не содержит ключа.
+     */
+    public WatchingKeyStore(Path directory, char[] keyStorePassword) throws Exception {
+        this.directory = directory;
+        this.keyStorePassword = keyStorePassword == null ? null : keyStorePassword.clone();
+        this.watchService = directory.getFileSystem().newWatchService();
+        try {
+            // Регистрация до начальной загрузки: изменения во время загрузки придут событиями
+            directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+            this.keysByFile = PemDirectoryKeyIndex.loadFiles(directory, this.keyStorePassword);
+        } catch (Exception e) {
+            watchService.close();
+            throw e;
+        }
+        this.keys = PemDirectoryKeyIndex.index(keysByFile);
+        this.watcher = new Thread(this::watch, "key-store-watcher-" + directory.getFileName());
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    @Override
+    public List<TrustedKey> resolve(String sender) {
+        return keys.getOrDefault(sender, List.of());
+    }
+
+    /**
+     * @return Количество отправителей в текущей таблице.
+     */
+    public int size() {
+        return keys.size();
+    }
+
+    /**
+     * @return Номер текущей таблицы ключей; увеличивается при каждой подмене.
+     */
+    public long generation() {
+        return generation;
+    }
+
+    /**
+     * @return Последняя ошибка фонового чтения ключей или null, если последнее применение изменений прошло без ошибок.
+     */
+    public Exception lastError() {
+        return lastError;
+    }
+
+    /**
+     * Останавливает наблюдение. Таблица ключей остается доступной в последнем состоянии.
+     * @throws IOException если не удалось закрыть WatchService.
+     */
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+        watcher.interrupt();
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey watchKey = watchService.take();
+                Set<String> changedFiles = new HashSet<>();
+                boolean overflow = false;
+                do {
+                    for (WatchEvent<?> event : watchKey.pollEvents()) {
+                        if (event.kind() == OVERFLOW) {
+                            overflow = true;
+                        } else {
+                            String fileName = event.context().toString();
+                            if (KeyFiles.isKeyFile(fileName)) {
+                                changedFiles.add(fileName);
+                            }
+                        }
+                    }
+                    if (!watchKey.reset()) {
+                        lastError = new Exception("Key directory is no longer accessible: " + directory);
+                        return;
+                    }
+                    watchKey = watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+                } while (watchKey != null);
+                apply(changedFiles, overflow);
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Хранилище закрыто
+        }
+    }
+
+    /**
+     * Применяет накопленные изменения. Вызывается потоком наблюдения, а после {@link #close()} - тестами.
+     * @param changedFiles Имена измененных файлов ключей.
+     * @param overflow true, если часть событий потеряна и каталог перечитывается целиком.
+     */
+    void apply(Set<String> changedFiles, boolean overflow) {
+        if (overflow) {
+            reloadAll();
+        } else if (!changedFiles.isEmpty()) {
+            reload(changedFiles);
+        }
+    }
+
+    /**
+     * Перечитывает каталог целиком, когда часть событий потеряна.
+     */
+    private void reloadAll() {
+        try {
+            SortedMap<String, List<TrustedKey>> loaded = PemDirectoryKeyIndex.loadFiles(directory, keyStorePassword);
+            keysByFile.clear();
+            keysByFile.putAll(loaded);
+            lastError = null;
+            publish();
+        } catch (Exception e) {
+            lastError = e;
+        }
+    }
+
+    private void reload(Set<String> changedFiles) {
+        Exception error = null;
+        for (String fileName : changedFiles) {
+            Path file = directory.resolve(fileName);
+            if (!Files.isRegularFile(file)) {
+                keysByFile.remove(fileName);
+                continue;
+            }
+            try {
+                keysByFile.put(fileName, KeyFiles.load(file, keyStorePassword));
+            } catch (Exception e) {
+                error = e;
+            }
+        }
+        lastError = error;
+        publish();
+    }
+
+    private void publish() {
+        keys = PemDirectoryKeyIndex.index(keysByFile);
+        generation++;
+    }
+}
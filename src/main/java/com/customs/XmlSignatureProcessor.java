@@ -1,40 +1,46 @@
 package com.customs;
 
 import org.apache.xml.security.Init;
-import org.apache.xml.security.c14n.Canonicalizer;
 import org.w3c.dom.*;
 import org.w3c.dom.bootstrap.DOMImplementationRegistry;
 import org.w3c.dom.ls.DOMImplementationLS;
 import org.w3c.dom.ls.LSSerializer;
 
-import javax.xml.namespace.NamespaceContext;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathFactory;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.KeyFactory;
 import java.security.NoSuchAlgorithmException;
 import java.security.PublicKey;
-import java.security.Signature;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.X509EncodedKeySpec;
+import java.util.ArrayDeque;
 import java.util.Base64;
-import java.util.Iterator;
+import java.util.Deque;
 
 /**
  * Класс для обработки XML-подписей, включая парсинг, канонизацию и верификацию.
  * Ответственность: вся логика, не связанная с UI.
+ * Статические методы делегируют {@link SignatureVerifier} с настройками по умолчанию;
+ * серверному коду, которому нужна своя конфигурация, следует держать собственный SignatureVerifier.
  */
 class XmlSignatureProcessor {
 
+    /**
+     * Фабрики ключей PEM в порядке перебора; RSA первой, так как это основной тип ключей контрагентов.
+     */
+    private static final String[] PEM_KEY_ALGORITHMS = {"RSA", "EC", "RSASSA-PSS"};
+
+    /**
+     * Верификатор с настройками по умолчанию, которому делегируют статические методы.
+     */
+    private static final SignatureVerifier DEFAULT_VERIFIER = SignatureVerifier.builder().build();
+
     static {
         // Инициализация библиотеки Apache Santuario.
         Init.init();
@@ -44,50 +50,13 @@ class XmlSignatureProcessor {
      * Создает фабрику построителя документов с учетом пространств имен.
      * @return Настроенная DocumentBuilderFactory.
      */
-    private static DocumentBuilderFactory createDocumentBuilderFactory() {
+    static DocumentBuilderFactory createDocumentBuilderFactory() {
         DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
         dbf.setNamespaceAware(true); // Важно: оставляем true для начального парсинга SOAP
         dbf.setIgnoringElementContentWhitespace(false);
         return dbf;
     }
 
-    /**
-     * Создает построитель документов.
-     * @return DocumentBuilder.
-     * @throws ParserConfigurationException если возникла ошибка конфигурации парсера.
-     */
-    private static DocumentBuilder createDocumentBuilder() throws ParserConfigurationException {
-        return createDocumentBuilderFactory().newDocumentBuilder();
-    }
-
-    /**
-     * Создает фабрику XPath.
-     * @return XPathFactory.
-     */
-    private static XPathFactory createXPathFactory() {
-        return XPathFactory.newInstance();
-    }
-
-    /**
-     * Создает и настраивает NamespaceContext для SOAP-пространства имен.
-     * @return NamespaceContext.
-     */
-    private static NamespaceContext createSoapNamespaceContext() {
-        return new NamespaceContext() {
-            @Override
-            public String getNamespaceURI(String prefix) {
-                if ("soap".equals(prefix)) {
-                    return "http://www.w3.org/2001/06/soap-envelope";
-                }
-                return null;
-            }
-            @Override
-            public String getPrefix(String uri) { return null; }
-            @Override
-            public Iterator<String> getPrefixes(String uri) { return null; }
-        };
-    }
-
     /**
      * Извлекает Base64-строку подписи из SOAP Header XML.
      * @param fullSoapXml Полный XML-документ SOAP.
@@ -95,15 +64,7 @@ class XmlSignatureProcessor {
      * @throws Exception Если элемент подписи не найден или ошибка парсинга.
      */
     public static String extractSignatureBase64(String fullSoapXml) throws Exception {
-        Document doc = createDocumentBuilder().parse(new ByteArrayInputStream(fullSoapXml.getBytes(StandardCharsets.UTF_8)));
-        XPath xpath = createXPathFactory().newXPath();
-        xpath.setNamespaceContext(createSoapNamespaceContext());
-
-        String signatureBase64 = xpath.evaluate("/soap:Envelope/soap:Header/Signature", doc).trim();
-        if (signatureBase64.isEmpty()) {
-            throw new Exception("Signature element not found in SOAP Header at /soap:Envelope/soap:Header/Signature");
-        }
-        return signatureBase64;
+        return DEFAULT_VERIFIER.extractSignatureBase64(DEFAULT_VERIFIER.parse(fullSoapXml));
     }
 
     /**
@@ -124,45 +85,65 @@ class XmlSignatureProcessor {
     }
 
     /**
-     * Рекурсивно удаляет пространства имен из узла и его потомков.
-     * Создает новые узлы без префиксов и атрибутов xmlns.
-     * @param node Исходный узел.
+     * Копирует узел и его потомков без пространств имен: создает новые узлы без префиксов и атрибутов xmlns.
+     * Обход итеративный (firstChild/nextSibling/parentNode) с явным стеком незавершенных копий элементов,
+     * поэтому глубина вложенности не ограничена стеком вызовов. Копия элемента присоединяется к родителю
+     * только после копирования всех ее потомков: вставка в отсоединенное поддерево не обходит цепочку предков.
+     * @param root Исходный узел.
      * @param document Документ, к которому будут принадлежать новые узлы.
      * @return Новый узел без пространств имен.
      */
-    private static Node removeNamespacesRecursive(Node node, Document document) {
-        if (node.getNodeType() == Node.ELEMENT_NODE) {
-            Element newElement = document.createElement(node.getLocalName());
-
-            NamedNodeMap attributes = node.getAttributes();
-            for (int i = 0; i < attributes.getLength(); i++) {
-                Node attr = attributes.item(i);
-                if (!attr.getNodeName().startsWith("xmlns") && attr.getNamespaceURI() == null) {
-                    newElement.setAttribute(attr.getLocalName(), attr.getNodeValue());
+    private static Node removeNamespaces(Node root, Document document) {
+        Deque<Node> openCopies = new ArrayDeque<>();
+        Node node = root;
+        while (true) {
+            Node copy;
+            if (node.getNodeType() == Node.ELEMENT_NODE) {
+                Element newElement = document.createElement(node.getLocalName());
+                NamedNodeMap attributes = node.getAttributes();
+                for (int i = 0; i < attributes.getLength(); i++) {
+                    Node attr = attributes.item(i);
+                    if (!attr.getNodeName().startsWith("xmlns") && attr.getNamespaceURI() == null) {
+                        newElement.setAttribute(attr.getLocalName(), attr.getNodeValue());
+                    }
+                }
+                Node firstChild = node.getFirstChild();
+                if (firstChild != null) {
+                    openCopies.push(newElement);
+                    node = firstChild;
+                    continue;
                 }
+                copy = newElement;
+            } else {
+                copy = document.importNode(node, true);
             }
+            if (openCopies.isEmpty()) {
+                return copy;
+            }
+            openCopies.peek().appendChild(copy);
 
-            NodeList children = node.getChildNodes();
-            for (int i = 0; i < children.getLength(); i++) {
-                newElement.appendChild(removeNamespacesRecursive(children.item(i), document));
+            while (node.getNextSibling() == null) {
+                node = node.getParentNode();
+                Node finished = openCopies.pop();
+                if (openCopies.isEmpty()) {
+                    return finished;
+                }
+                openCopies.peek().appendChild(finished);
             }
-            return newElement;
-        } else {
-            return document.importNode(node, true);
+            node = node.getNextSibling();
         }
     }
 
     /**
      * Создает новый XML-документ, в котором удалены все пространства имен из исходного узла.
      * @param sourceNode Исходный узел, из которого нужно удалить пространства имен.
+     * @param db Построитель, создающий новый документ.
      * @return Новый XML-документ без пространств имен.
-     * @throws ParserConfigurationException если возникла ошибка конфигурации парсера.
      */
-    private static Document removeAllNamespaces(Node sourceNode) throws ParserConfigurationException {
-        DocumentBuilder db = createDocumentBuilder();
+    static Document removeAllNamespaces(Node sourceNode, DocumentBuilder db) {
         Document doc = db.newDocument();
 
-        Node newNode = removeNamespacesRecursive(sourceNode, doc);
+        Node newNode = removeNamespaces(sourceNode, doc);
         doc.appendChild(newNode);
         return doc;
     }
@@ -176,31 +157,27 @@ class XmlSignatureProcessor {
      * @throws Exception если возникли ошибки при парсинге или канонизации.
      */
     public static byte[] canonicalizeSoapBody(String fullSoapXml) throws Exception {
-        DocumentBuilder db = createDocumentBuilder();
-        Document doc = db.parse(new ByteArrayInputStream(fullSoapXml.getBytes(StandardCharsets.UTF_8)));
-
-        XPath xpath = createXPathFactory().newXPath();
-        xpath.setNamespaceContext(createSoapNamespaceContext());
-
-        Node bodyNode = (Node) xpath.evaluate("/soap:Envelope/soap:Body", doc, XPathConstants.NODE);
-        if (bodyNode == null) {
-            throw new Exception("SOAP Body element not found at /soap:Envelope/soap:Body.");
-        }
-
-        Canonicalizer canon = Canonicalizer.getInstance(Canonicalizer.ALGO_ID_C14N_OMIT_COMMENTS);
-        ByteArrayOutputStream finalStream = new ByteArrayOutputStream();
-
-        NodeList bodyChildren = bodyNode.getChildNodes();
-        for (int i = 0; i < bodyChildren.getLength(); i++) {
-            Node node = bodyChildren.item(i);
+        return DEFAULT_VERIFIER.canonicalizeSoapBody(DEFAULT_VERIFIER.parse(fullSoapXml));
+    }
 
-            if (node.getNodeType() == Node.ELEMENT_NODE) {
-                Document tempDoc = removeAllNamespaces(node);
-                canon.canonicalizeSubtree(tempDoc.getDocumentElement(), finalStream);
-            }
-        }
+    /**
+     * Выполняет потоковую канонизацию SOAP Body без построения DOM.
+     * Результат побайтно совпадает с {@link #canonicalizeSoapBody(String)}.
+     *
+     * @param soapXml Поток с полным XML-документом SOAP.
+     * @return Канонизированные байты.
+     * @throws Exception если Body не найден или возникла ошибка разбора.
+     */
+    public static byte[] canonicalizeSoapBodyStreaming(InputStream soapXml) throws Exception {
+        return DEFAULT_VERIFIER.canonicalizeSoapBodyStreaming(soapXml);
+    }
 
-        return finalStream.toByteArray();
+    /**
+     * Возвращает общий кеш публичных ключей, например для чтения счетчиков попаданий и промахов.
+     * @return Кеш ключей.
+     */
+    static PublicKeyCache keyCache() {
+        return DEFAULT_VERIFIER.keyCache();
     }
 
     /**
@@ -208,8 +185,8 @@ class XmlSignatureProcessor {
      * @param pemFile Файл с публичным ключом в кодировке Base64 между заголовками BEGIN/END PUBLIC KEY.
      * @return Объект PublicKey.
      * @throws IOException если произошла ошибка чтения файла.
-     * @throws NoSuchAlgorithmException если алгоритм RSA не найден.
-     * @throws InvalidKeySpecException если спецификация ключа недействительна.
+     * @throws NoSuchAlgorithmException если алгоритм ключа не найден.
+     * @throws InvalidKeySpecException если ключ не является ключом RSA, EC или RSASSA-PSS.
      */
     public static PublicKey loadPublicKeyFromPem(File pemFile) throws IOException, NoSuchAlgorithmException, InvalidKeySpecException {
         String key = new String(Files.readAllBytes(pemFile.toPath()));
@@ -219,8 +196,16 @@ class XmlSignatureProcessor {
 
         byte[] decoded = Base64.getDecoder().decode(key);
         X509EncodedKeySpec spec = new X509EncodedKeySpec(decoded);
-        KeyFactory kf = KeyFactory.getInstance("RSA");
-        return kf.generatePublic(spec);
+        InvalidKeySpecException failure = null;
+        for (String keyAlgorithm : PEM_KEY_ALGORITHMS) {
+            try {
+                return KeyFactory.getInstance(keyAlgorithm).generatePublic(spec);
+            } catch (InvalidKeySpecException e) {
+                // Идентификатор алгоритма в SubjectPublicKeyInfo не подходит этой фабрике, пробуем следующую
+                failure = e;
+            }
+        }
+        throw failure;
     }
 
     /**
@@ -234,12 +219,81 @@ class XmlSignatureProcessor {
      */
     public static boolean verifySignature(String fullSoapXml, String signatureBase64, File publicKeyFile) throws Exception {
         byte[] canonicalBytes = canonicalizeSoapBody(fullSoapXml);
-        PublicKey publicKey = loadPublicKeyFromPem(publicKeyFile);
+        return DEFAULT_VERIFIER.verifySignature(canonicalBytes, signatureBase64, DEFAULT_VERIFIER.loadPublicKey(publicKeyFile));
+    }
+
+    /**
+     * Верифицирует подпись SOAP-сообщения за один разбор документа.
+     * Подпись из Header и дочерние элементы Body берутся из одного и того же Document.
+     *
+     * @param soapXml Байты полного XML-документа SOAP.
+     * @param publicKeyFile Файл публичного ключа в формате PEM.
+     * @return true, если подпись действительна, иначе false.
+     * @throws Exception Если произошла ошибка при разборе, канонизации, загрузке ключа или верификации.
+     */
+    public static boolean verify(byte[] soapXml, File publicKeyFile) throws Exception {
+        return DEFAULT_VERIFIER.verify(soapXml, publicKeyFile);
+    }
+
+    /**
+     * Верифицирует подпись SOAP-сообщения за один разбор документа.
+     *
+     * @param soapXml Поток с полным XML-документом SOAP.
+     * @param publicKeyFile Файл публичного ключа в формате PEM.
+     * @return true, если подпись действительна, иначе false.
+     * @throws Exception Если произошла ошибка при разборе, канонизации, загрузке ключа или верификации.
+     */
+    public static boolean verify(InputStream soapXml, File publicKeyFile) throws Exception {
+        return DEFAULT_VERIFIER.verify(soapXml, publicKeyFile);
+    }
 
-        byte[] signatureBytes = Base64.getDecoder().decode(signatureBase64);
-        Signature signature = Signature.getInstance("SHA512withRSA");
-        signature.initVerify(publicKey);
-        signature.update(canonicalBytes);
-        return signature.verify(signatureBytes);
+    /**
+     * Верифицирует подпись SOAP-сообщения, занимающего часть массива, без копирования байтов.
+     *
+     * @param soapXml Массив, содержащий XML-документ SOAP.
+     * @param offset Смещение начала документа.
+     * @param length Длина документа в байтах.
+     * @param publicKeyFile Файл публичного ключа в формате PEM.
+     * @return true, если подпись действительна, иначе false.
+     * @throws Exception Если произошла ошибка при разборе, канонизации, загрузке ключа или верификации.
+     */
+    public static boolean verify(byte[] soapXml, int offset, int length, File publicKeyFile) throws Exception {
+        return DEFAULT_VERIFIER.verify(soapXml, offset, length, publicKeyFile);
+    }
+
+    /**
+     * Верифицирует подпись SOAP-сообщения из оставшихся байтов буфера без копирования.
+     *
+     * @param soapXml Буфер с XML-документом SOAP.
+     * @param publicKeyFile Файл публичного ключа в формате PEM.
+     * @return true, если подпись действительна, иначе false.
+     * @throws Exception Если произошла ошибка при разборе, канонизации, загрузке ключа или верификации.
+     */
+    public static boolean verify(ByteBuffer soapXml, File publicKeyFile) throws Exception {
+        return DEFAULT_VERIFIER.verify(soapXml, publicKeyFile);
+    }
+
+    /**
+     * Верифицирует подпись SOAP-сообщения из файла, отображенного в память, без чтения файла в кучу.
+     *
+     * @param soapXmlFile Файл с полным XML-документом SOAP.
+     * @param publicKeyFile Файл публичного ключа в формате PEM.
+     * @return true, если подпись действительна, иначе false.
+     * @throws Exception Если произошла ошибка при чтении, разборе, канонизации, загрузке ключа или верификации.
+     */
+    public static boolean verify(Path soapXmlFile, File publicKeyFile) throws Exception {
+        return DEFAULT_VERIFIER.verify(soapXmlFile, publicKeyFile);
+    }
+
+    /**
+     * Верифицирует подпись SOAP-сообщения потоково, без построения DOM.
+     *
+     * @param soapXml Поток с полным XML-документом SOAP.
+     * @param publicKeyFile Файл публичного ключа в формате PEM.
+     * @return true, если подпись действительна, иначе false.
+     * @throws Exception Если произошла ошибка при разборе, канонизации, загрузке ключа или верификации.
+     */
+    public static boolean verifyStreaming(InputStream soapXml, File publicKeyFile) throws Exception {
+        return DEFAULT_VERIFIER.verifyStreaming(soapXml, publicKeyFile);
     }
-}
\ No newline at end of file
+}
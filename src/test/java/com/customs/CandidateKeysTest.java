@@ -0,0 +1,89 @@
+package com.customs;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Перебор нескольких ключей отправителя: ключ, к которому подпись не подходит, пропускается одинаково
+ * при одном и при нескольких кандидатах.
+ */
+class CandidateKeysTest {
+
+    private static final String TEMPLATE = TestEnvelopes.envelope(
+            "<Sender>s</Sender><Signature>" + TestEnvelopes.SIGNATURE + "</Signature>", TestEnvelopes.BODY);
+
+    private static KeyPair rsaKeyPair;
+    private static KeyPair shortRsaKeyPair;
+    private static KeyPair otherShortRsaKeyPair;
+    private static KeyPair ecKeyPair;
+    private static KeyPair dsaKeyPair;
+
+    @BeforeAll
+    static void generateKeys() throws Exception {
+        rsaKeyPair = TestEnvelopes.rsaKeyPair();
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(1024);
+        shortRsaKeyPair = generator.generateKeyPair();
+        otherShortRsaKeyPair = generator.generateKeyPair();
+        generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(256);
+        ecKeyPair = generator.generateKeyPair();
+        generator = KeyPairGenerator.getInstance("DSA");
+        generator.initialize(2048);
+        dsaKeyPair = generator.generateKeyPair();
+    }
+
+    @Test
+    void wrongLengthSignatureIsInvalidForOneOrSeveralKeys() throws Exception {
+        byte[] message = TestEnvelopes.sign(TEMPLATE, rsaKeyPair.getPrivate(), "SHA512withRSA");
+        SignatureVerifier rsaPkcs1 = SignatureVerifier.builder().build();
+        assertFalse(rsaPkcs1.verify(message, keyResolver(shortRsaKeyPair)));
+        assertFalse(rsaPkcs1.verify(message, keyResolver(shortRsaKeyPair, otherShortRsaKeyPair)));
+
+        byte[] pssMessage = TestEnvelopes.sign(TEMPLATE, rsaKeyPair.getPrivate(), "RSASSA-PSS",
+                SignatureAlgorithm.RSA_PSS_SHA256.parameters());
+        SignatureVerifier pss = SignatureVerifier.builder().signatureAlgorithm(SignatureAlgorithm.RSA_PSS_SHA256).build();
+        assertFalse(pss.verify(pssMessage, keyResolver(shortRsaKeyPair)));
+        assertFalse(pss.verify(pssMessage, keyResolver(shortRsaKeyPair, otherShortRsaKeyPair)));
+        assertTrue(pss.verify(pssMessage, keyResolver(shortRsaKeyPair, rsaKeyPair)));
+    }
+
+    @Test
+    void keyOfAnotherTypeIsSkipped() throws Exception {
+        byte[] message = TestEnvelopes.sign(TEMPLATE, rsaKeyPair.getPrivate(), "SHA512withRSA");
+        SignatureVerifier verifier = SignatureVerifier.builder().signatureAlgorithm(SignatureAlgorithm.RSA_SHA512).build();
+        assertFalse(verifier.verify(message, keyResolver(ecKeyPair)));
+        assertFalse(verifier.verify(message, keyResolver(ecKeyPair, shortRsaKeyPair)));
+        assertTrue(verifier.verify(message, keyResolver(ecKeyPair, rsaKeyPair)));
+    }
+
+    @Test
+    void keyWithoutConfiguredAlgorithmIsSkipped() throws Exception {
+        byte[] message = TestEnvelopes.sign(TEMPLATE, rsaKeyPair.getPrivate(), "SHA512withRSA");
+        SignatureVerifier verifier = SignatureVerifier.builder().build();
+        assertFalse(verifier.verify(message, keyResolver(dsaKeyPair)));
+        assertFalse(verifier.verify(message, keyResolver(dsaKeyPair, shortRsaKeyPair)));
+        // Ключ DSA первым не мешает ни проверке по одному хешу, ни перебору через Signature
+        assertTrue(verifier.verify(message, keyResolver(dsaKeyPair, rsaKeyPair)));
+        assertTrue(verifier.verify(message, keyResolver(rsaKeyPair, dsaKeyPair)));
+        assertTrue(verifier.verify(message, keyResolver(ecKeyPair, dsaKeyPair, shortRsaKeyPair, rsaKeyPair)));
+    }
+
+        private static KeyResolver keyResolver(KeyPair... keyPairs) {
+        return sender -> {
+            List<TrustedKey> keys = new ArrayList<>();
+            for (KeyPair keyPair : keyPairs) {
+                keys.add(TrustedKey.of(keyPair.getPublic()));
+            }
+            return keys;
+        };
+    }
+}
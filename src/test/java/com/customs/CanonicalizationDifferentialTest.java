@@ -0,0 +1,184 @@
+package com.customs;
+
+import org.apache.xml.security.c14n.Canonicalizer;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Дифференциальные тесты канонизации: {@link DomCanonicalizer} (через {@link C14nWriter})
+ * и {@link StreamingCanonicalizer} должны совпадать побайтно с Santuario на документе
+ * после {@link XmlSignatureProcessor#removeAllNamespaces}.
+ */
+class CanonicalizationDifferentialTest {
+
+    private static final String SOAP_NAMESPACE = SoapVersion.SOAP_2001_06.getNamespace();
+
+    private final SignatureVerifier verifier = SignatureVerifier.builder().build();
+
+    @Test
+    void attributesAreSortedAndEscaped() throws Exception {
+        assertCanonical("<m:Decl xmlns:m=\"urn:m\" xmlns=\"urn:d\" xmlns:x=\"urn:x\" zeta=\"1\" alpha=\"2\" Beta=\"3\""
+                + " x:dropped=\"4\" b=\"&amp;&lt;&gt;&quot;'&#9;&#10;&#13; tab\tnl\n\"  c='a\"b'>"
+                + "<Item  id = \"7\"  aa=\"\" a=\"x\"/></m:Decl>");
+    }
+
+    @Test
+    void textCdataProcessingInstructionsAndComments() throws Exception {
+        assertCanonical("<Doc>a &#13; b\r\nc &amp; &lt; &gt; \" '"
+                + "<![CDATA[<cd>&]]]]><![CDATA[>]]>]<!-- comment --><?pi  data with &#13; ?><?empty?>"
+                + "<x:Inner xmlns:x=\"urn:x\"><?pi2 d?>text<!--c--></x:Inner>tail</Doc>");
+    }
+
+    @Test
+    void nonAsciiAndSupplementaryCharacters() throws Exception {
+        assertCanonical("<Doc name=\"Товар 😀 &#x1F600; é\">Товар &amp; 😀 &#x10FFFF; 中文 é<Empty/></Doc>");
+    }
+
+    @Test
+    void multipleBodyChildren() throws Exception {
+        assertCanonical("\n<First a=\"1\">one</First>\ntext between<!-- c --><?pi between?>"
+                + "<Second xmlns=\"urn:d\"><Third>t</Third></Second>\n<p:Third xmlns:p=\"urn:p\" p:a=\"x\" b=\"y\"/>");
+    }
+
+    @Test
+    void deepNesting() throws Exception {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            body.append("<n:L").append(i).append(" xmlns:n=\"urn:").append(i).append("\" d=\"").append(i).append("\">");
+        }
+        for (int i = 199; i >= 0; i--) {
+            body.append("</n:L").append(i).append('>');
+        }
+        assertCanonical(body.toString());
+    }
+
+    @Test
+    void removeAllNamespacesCopiesVeryDeepTreeWithoutRecursion() throws Exception {
+        int depth = 100_000;
+        DocumentBuilder builder = XmlSignatureProcessor.createDocumentBuilderFactory().newDocumentBuilder();
+        Document source = builder.newDocument();
+        // Дерево собирается снизу вверх: вставка в отсоединенный элемент не обходит цепочку предков
+        Element node = source.createElementNS("urn:n", "n:Leaf");
+        node.appendChild(source.createTextNode("leaf"));
+        for (int i = depth - 1; i > 0; i--) {
+            Element parent = source.createElementNS("urn:n", "n:L");
+            parent.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, "xmlns:n", "urn:n");
+            parent.setAttributeNS(null, "d", "1");
+            parent.appendChild(node);
+            node = parent;
+        }
+        source.appendChild(node);
+
+        Document stripped = XmlSignatureProcessor.removeAllNamespaces(source.getDocumentElement(), builder);
+
+        Node copy = stripped.getDocumentElement();
+        for (int i = 1; i < depth; i++) {
+            assertEquals("L", copy.getNodeName());
+            assertNull(copy.getNamespaceURI());
+            assertEquals(1, copy.getAttributes().getLength());
+            copy = copy.getFirstChild();
+        }
+        assertEquals("Leaf", copy.getNodeName());
+        assertEquals("leaf", copy.getTextContent());
+    }
+
+    @Test
+    void largeTextCrossesWriterBuffer() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; text.length() < 40_000; i++) {
+            text.append("Товар &amp; ").append(i).append(" 😀 &lt;").append(i % 3 == 0 ? "&#13;" : "").append(' ');
+        }
+        assertCanonical("<Doc a=\"" + text + "\">" + text + "</Doc>");
+    }
+
+    @Test
+    void supplementaryCharactersSplitBetweenStaxChunks() throws Exception {
+        // Сплошные суррогатные пары со сдвигом 0..3 гарантируют, что граница буфера StAX придется внутрь пары
+        StringBuilder pairs = new StringBuilder();
+        while (pairs.length() < 70_000) {
+            pairs.append("😀");
+        }
+        for (int shift = 0; shift < 4; shift++) {
+            String prefix = "x".repeat(shift);
+            assertCanonical("<Doc>" + prefix + pairs + "</Doc><Attr a=\"" + prefix + pairs + "\"/>");
+        }
+    }
+
+    @Test
+    void writerJoinsSurrogatePairSplitBetweenTextChunks() throws Exception {
+        char[] text = "a😀bТ😀".toCharArray();
+        byte[] expected = canonicalText(text, text.length);
+        for (int split = 0; split <= text.length; split++) {
+            assertArrayEquals(expected, canonicalText(text, split), "split at " + split);
+        }
+        assertEquals("<e>a😀bТ😀</e>", new String(expected, StandardCharsets.UTF_8));
+    }
+
+    private static byte[] canonicalText(char[] text, int split) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        C14nWriter writer = new C14nWriter(out);
+        writer.startElement("e", new String[0], new String[0], 0);
+        writer.text(text, 0, split);
+        writer.text(text, split, text.length - split);
+        writer.endElement("e");
+        writer.flush();
+        return out.toByteArray();
+    }
+
+    /**
+     * Сравнивает каноническую форму Body по всем реализациям.
+     * @param body Содержимое SOAP Body.
+     */
+    private void assertCanonical(String body) throws Exception {
+        byte[] envelope = envelope(body);
+        byte[] expected = santuario(envelope);
+        assertEquals(new String(expected, StandardCharsets.UTF_8),
+                new String(dom(envelope), StandardCharsets.UTF_8), "DomCanonicalizer");
+        assertArrayEquals(expected, dom(envelope), "DomCanonicalizer");
+        assertArrayEquals(expected, streaming(envelope), "StreamingCanonicalizer");
+    }
+
+    private static byte[] envelope(String body) {
+        return ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<soap:Envelope xmlns:soap=\"" + SOAP_NAMESPACE + "\">"
+                + "<soap:Header><Signature>AAAA</Signature></soap:Header><soap:Body>" + body
+                + "</soap:Body></soap:Envelope>").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Исходный путь: копия каждого дочернего элемента Body без пространств имен, канонизированная Santuario.
+     */
+    private byte[] santuario(byte[] envelope) throws Exception {
+        DocumentBuilder builder = XmlSignatureProcessor.createDocumentBuilderFactory().newDocumentBuilder();
+        Document doc = builder.parse(new ByteArrayInputStream(envelope));
+        Node body = doc.getElementsByTagNameNS(SOAP_NAMESPACE, "Body").item(0);
+        Canonicalizer canonicalizer = Canonicalizer.getInstance(Canonicalizer.ALGO_ID_C14N_OMIT_COMMENTS);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (Node child = body.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() == Node.ELEMENT_NODE) {
+                Document stripped = XmlSignatureProcessor.removeAllNamespaces(child, builder);
+                canonicalizer.canonicalizeSubtree(stripped.getDocumentElement(), out);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private byte[] dom(byte[] envelope) throws Exception {
+        return verifier.canonicalizeSoapBody(verifier.parse(new ByteArrayInputStream(envelope)));
+    }
+
+    private byte[] streaming(byte[] envelope) throws Exception {
+        return verifier.canonicalizeSoapBodyStreaming(new ByteArrayInputStream(envelope));
+    }
+}
@@ -0,0 +1,176 @@
+package com.customs;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Офлайн-проверка цепочки и отзыва: корень - промежуточный CA - сертификат ключа.
+ */
+class CertificateValidatorTest {
+
+    private static final String ROOT = "CN=Root";
+    private static final String INTERMEDIATE = "CN=Intermediate";
+    private static final BigInteger LARGE_SERIAL = BigInteger.ONE.shiftLeft(100).add(BigInteger.valueOf(7));
+
+    private static KeyPair rootKeys;
+    private static KeyPair intermediateKeys;
+    private static KeyPair leafKeys;
+
+    @TempDir
+    Path anchors;
+    @TempDir
+    Path crls;
+    private Instant now;
+    private X509Certificate intermediate;
+
+    @BeforeAll
+    static void generateKeys() throws Exception {
+        rootKeys = TestEnvelopes.rsaKeyPair();
+        intermediateKeys = TestEnvelopes.rsaKeyPair();
+        leafKeys = TestEnvelopes.rsaKeyPair();
+    }
+
+    @BeforeEach
+    void writeTrustAnchors() throws Exception {
+        now = Instant.ofEpochSecond(Instant.now().getEpochSecond());
+        X509Certificate root = TestCertificates.certificate(ROOT, rootKeys.getPublic(), ROOT, rootKeys.getPrivate(),
+                BigInteger.ONE, now.minus(Duration.ofDays(1)), now.plus(Duration.ofDays(3650)), true);
+        intermediate = TestCertificates.certificate(INTERMEDIATE, intermediateKeys.getPublic(), ROOT, rootKeys.getPrivate(),
+                BigInteger.TWO, now.minus(Duration.ofDays(1)), now.plus(Duration.ofDays(1825)), true);
+        TestCertificates.writePem(anchors.resolve("root.pem"), root);
+        TestCertificates.writePem(anchors.resolve("intermediate.crt"), intermediate);
+    }
+
+    @Test
+    void chainWithCurrentCrlsIsAccepted() throws Exception {
+        writeCrls(now.plus(Duration.ofDays(7)));
+        CertificateValidator validator = new CertificateValidator(anchors, crls);
+        assertAccepted(validator, leaf(BigInteger.valueOf(100), now.minus(Duration.ofHours(1))), now);
+        assertAccepted(validator, TrustedKey.of(leafKeys.getPublic()), now);
+    }
+
+    @Test
+    void certificateFromUnknownIssuerIsRejected() throws Exception {
+        writeCrls(now.plus(Duration.ofDays(7)));
+        KeyPair otherKeys = TestEnvelopes.rsaKeyPair();
+        X509Certificate foreign = TestCertificates.certificate("CN=Leaf", leafKeys.getPublic(), "CN=Other",
+                otherKeys.getPrivate(), BigInteger.TEN, now.minus(Duration.ofHours(1)), now.plus(Duration.ofDays(365)), false);
+        assertRejected(new CertificateValidator(anchors, crls), TrustedKey.of(foreign), now, "does not chain");
+    }
+
+    @Test
+    void revokedSerialsAreRejectedInBothRanges() throws Exception {
+        writeCrl("root.crl", ROOT, rootKeys, now.plus(Duration.ofDays(7)));
+        writeCrl("intermediate.crl", INTERMEDIATE, intermediateKeys, now.plus(Duration.ofDays(7)),
+                BigInteger.valueOf(0x1234), LARGE_SERIAL);
+        CertificateValidator validator = new CertificateValidator(anchors, crls);
+        Instant notBefore = now.minus(Duration.ofHours(1));
+        assertRejected(validator, leaf(BigInteger.valueOf(0x1234), notBefore), now, "is revoked");
+        assertRejected(validator, leaf(LARGE_SERIAL, notBefore), now, "is revoked");
+        assertAccepted(validator, leaf(BigInteger.valueOf(0x1235), notBefore), now);
+        assertAccepted(validator, leaf(LARGE_SERIAL.add(BigInteger.ONE), notBefore), now);
+    }
+
+    @Test
+    void revokedIntermediateIsRejected() throws Exception {
+        writeCrl("root.crl", ROOT, rootKeys, now.plus(Duration.ofDays(7)), intermediate.getSerialNumber());
+        writeCrl("intermediate.crl", INTERMEDIATE, intermediateKeys, now.plus(Duration.ofDays(7)));
+        assertRejected(new CertificateValidator(anchors, crls),
+                leaf(BigInteger.valueOf(100), now.minus(Duration.ofHours(1))), now, "'CN=Intermediate' with serial 2 is revoked");
+    }
+
+    @Test
+    void missingCrlFailsClosed() throws Exception {
+        writeCrl("root.crl", ROOT, rootKeys, now.plus(Duration.ofDays(7)));
+        assertRejected(new CertificateValidator(anchors, crls),
+                leaf(BigInteger.valueOf(100), now.minus(Duration.ofHours(1))), now, "No CRL for issuer 'CN=Intermediate'");
+    }
+
+    @Test
+    void staleCrlFailsClosed() throws Exception {
+        writeCrl("root.crl", ROOT, rootKeys, now.plus(Duration.ofDays(7)));
+        writeCrl("intermediate.crl", INTERMEDIATE, intermediateKeys, now.minus(Duration.ofHours(1)));
+        assertRejected(new CertificateValidator(anchors, crls),
+                leaf(BigInteger.valueOf(100), now.minus(Duration.ofHours(1))), now, "is out of date");
+    }
+
+    @Test
+    void failureIsRetriedAndNewCrlIsPickedUp() throws Exception {
+        writeCrl("root.crl", ROOT, rootKeys, now.plus(Duration.ofDays(7)));
+        CertificateValidator validator = new CertificateValidator(anchors, crls);
+        TrustedKey key = leaf(BigInteger.valueOf(100), now.minus(Duration.ofHours(1)));
+        assertRejected(validator, key, now, "No CRL");
+
+        writeCrl("intermediate.crl", INTERMEDIATE, intermediateKeys, now.plus(Duration.ofDays(7)));
+        assertRejected(validator, key, now.plusSeconds(1), "No CRL");
+        assertAccepted(validator, key, now.plusMillis(CertificateValidator.FAILURE_RETRY_MILLIS + 1));
+    }
+
+    @Test
+    void notYetValidCertificateIsAcceptedFromNotBefore() throws Exception {
+        writeCrls(now.plus(Duration.ofDays(7)));
+        CertificateValidator validator = new CertificateValidator(anchors, crls);
+        Instant notBefore = now.plusSeconds(10);
+        TrustedKey key = leaf(BigInteger.valueOf(100), notBefore);
+        assertRejected(validator, key, now, "does not chain");
+        assertAccepted(validator, key, notBefore);
+    }
+
+    @Test
+    void acceptedVerdictExpiresAtCrlNextUpdate() throws Exception {
+        Instant nextUpdate = now.plus(Duration.ofHours(1));
+        writeCrls(nextUpdate);
+        CertificateValidator validator = new CertificateValidator(anchors, crls);
+        TrustedKey key = leaf(BigInteger.valueOf(100), now.minus(Duration.ofHours(1)));
+        assertAccepted(validator, key, now);
+        assertAccepted(validator, key, nextUpdate);
+        assertRejected(validator, key, nextUpdate.plusMillis(1), "is out of date");
+    }
+
+    @Test
+    void crlSignedByUntrustedKeyIsRejectedAtLoad() throws Exception {
+        writeCrl("root.crl", ROOT, rootKeys, now.plus(Duration.ofDays(7)));
+        writeCrl("intermediate.crl", INTERMEDIATE, leafKeys, now.plus(Duration.ofDays(7)));
+        Exception e = assertThrows(Exception.class, () -> new CertificateValidator(anchors, crls));
+        assertTrue(e.getMessage().contains("is not signed by a trusted issuer"), e.getMessage());
+    }
+
+    private TrustedKey leaf(BigInteger serial, Instant notBefore) throws Exception {
+        return TrustedKey.of(TestCertificates.certificate("CN=Leaf", leafKeys.getPublic(), INTERMEDIATE,
+                intermediateKeys.getPrivate(), serial, notBefore, now.plus(Duration.ofDays(365)), false));
+    }
+
+    private void writeCrls(Instant nextUpdate) throws Exception {
+        writeCrl("root.crl", ROOT, rootKeys, nextUpdate);
+        writeCrl("intermediate.crl", INTERMEDIATE, intermediateKeys, nextUpdate);
+    }
+
+    private void writeCrl(String file, String issuer, KeyPair issuerKeys, Instant nextUpdate, BigInteger... revoked)
+            throws Exception {
+        Files.write(crls.resolve(file), TestCertificates.crl(issuer, issuerKeys.getPrivate(),
+                now.minus(Duration.ofDays(1)), nextUpdate, revoked).getEncoded());
+    }
+
+    private static void assertAccepted(CertificateValidator validator, TrustedKey key, Instant time) {
+        assertDoesNotThrow(() -> validator.check(key, time.toEpochMilli()));
+    }
+
+    private static void assertRejected(CertificateValidator validator, TrustedKey key, Instant time, String reason) {
+        Exception e = assertThrows(Exception.class, () -> validator.check(key, time.toEpochMilli()));
+        assertTrue(e.getMessage().contains(reason), e.getMessage());
+    }
+}
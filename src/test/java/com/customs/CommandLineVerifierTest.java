@@ -0,0 +1,87 @@
+package com.customs;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.math.BigInteger;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Коды завершения безоконного режима.
+ */
+class CommandLineVerifierTest {
+
+    @TempDir
+    static Path directory;
+    private static Path keyFile;
+    private static Path validFile;
+
+    @BeforeAll
+    static void createFiles() throws Exception {
+        KeyPair keyPair = TestEnvelopes.rsaKeyPair();
+        keyFile = TestEnvelopes.writePem(directory, "key", keyPair.getPublic());
+        String template = TestEnvelopes.envelope("<Signature>" + TestEnvelopes.SIGNATURE + "</Signature>", TestEnvelopes.BODY);
+        validFile = Files.write(directory.resolve("valid.xml"), TestEnvelopes.sign(template, keyPair.getPrivate(), "SHA512withRSA"));
+    }
+
+    @Test
+    void validFileExitsWithZero() {
+        assertEquals(CommandLineVerifier.EXIT_ALL_VALID, run("--key", keyFile.toString(), validFile.toString()));
+    }
+
+    @Test
+    void tamperedFileExitsWithInvalid() throws Exception {
+        Path tampered = Files.writeString(directory.resolve("tampered.xml"),
+                Files.readString(validFile).replace("Товар", "Товары"));
+        assertEquals(CommandLineVerifier.EXIT_INVALID_FOUND, run("--key", keyFile.toString(), tampered.toString()));
+    }
+
+    @Test
+    void expiredCertificateInKeyDirectoryIsSkipped() throws Exception {
+        Path keys = Files.createDirectory(directory.resolve("rotation"));
+        Instant now = Instant.now();
+        KeyPair oldKeyPair = TestEnvelopes.rsaKeyPair();
+        KeyPair newKeyPair = TestEnvelopes.rsaKeyPair();
+        X509Certificate expired = TestCertificates.certificate("CN=Old", oldKeyPair.getPublic(), "CN=Old",
+                oldKeyPair.getPrivate(), BigInteger.ONE, now.minus(Duration.ofDays(400)), now.minus(Duration.ofDays(1)), false);
+        X509Certificate current = TestCertificates.certificate("CN=New", newKeyPair.getPublic(), "CN=New",
+                newKeyPair.getPrivate(), BigInteger.TWO, now.minus(Duration.ofDays(1)), now.plus(Duration.ofDays(365)), false);
+        TestCertificates.writePem(keys.resolve("a-old.crt"), expired);
+        TestCertificates.writePem(keys.resolve("b-new.crt"), current);
+        String template = TestEnvelopes.envelope("<Signature>" + TestEnvelopes.SIGNATURE + "</Signature>", TestEnvelopes.BODY);
+        Path signedByNew = Files.write(directory.resolve("new.xml"),
+                TestEnvelopes.sign(template, newKeyPair.getPrivate(), "SHA512withRSA"));
+        Path signedByOld = Files.write(directory.resolve("old.xml"),
+                TestEnvelopes.sign(template, oldKeyPair.getPrivate(), "SHA512withRSA"));
+
+        assertEquals(CommandLineVerifier.EXIT_ALL_VALID, run("--key", keys.toString(), signedByNew.toString()));
+        assertEquals(CommandLineVerifier.EXIT_INVALID_FOUND, run("--key", keys.toString(), signedByOld.toString()));
+        assertEquals(CommandLineVerifier.EXIT_INVALID_FOUND,
+                run("--key", keys.resolve("a-old.crt").toString(), signedByOld.toString()));
+    }
+
+    @Test
+    void badArgumentsExitWithUsage() {
+        assertEquals(CommandLineVerifier.EXIT_USAGE, run(validFile.toString()));
+        assertEquals(CommandLineVerifier.EXIT_USAGE, run("--key", keyFile.toString(), "--workers", "0", validFile.toString()));
+    }
+
+    @Test
+    void runtimeFailuresExitWithError() {
+        assertEquals(CommandLineVerifier.EXIT_ERROR, run("--key", keyFile.toString(), directory.resolve("missing.xml").toString()));
+        assertEquals(CommandLineVerifier.EXIT_ERROR,
+                run("--key", directory.resolve("missing.pem").toString(), validFile.toString()));
+    }
+
+    private static int run(String... args) {
+        return CommandLineVerifier.run(args);
+    }
+}
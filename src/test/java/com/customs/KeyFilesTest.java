@@ -0,0 +1,137 @@
+package com.customs;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Загрузка ключей из файлов каждого поддерживаемого формата.
+ */
+class KeyFilesTest {
+
+    private static final char[] PASSWORD = "changeit".toCharArray();
+
+    private static KeyPair caKeys;
+    private static X509Certificate ca;
+    private static X509Certificate firstLeaf;
+    private static X509Certificate secondLeaf;
+
+    @TempDir
+    Path directory;
+
+    @BeforeAll
+    static void issueCertificates() throws Exception {
+        caKeys = TestEnvelopes.rsaKeyPair();
+        Instant now = Instant.ofEpochSecond(Instant.now().getEpochSecond());
+        Instant notAfter = now.plus(Duration.ofDays(365));
+        ca = TestCertificates.certificate("CN=CA", caKeys.getPublic(), "CN=CA", caKeys.getPrivate(),
+                BigInteger.ONE, now, notAfter, true);
+        firstLeaf = TestCertificates.certificate("CN=First", TestEnvelopes.rsaKeyPair().getPublic(), "CN=CA",
+                caKeys.getPrivate(), BigInteger.TWO, now, notAfter, false);
+        secondLeaf = TestCertificates.certificate("CN=Second", TestEnvelopes.rsaKeyPair().getPublic(), "CN=CA",
+                caKeys.getPrivate(), BigInteger.TEN, now, notAfter, false);
+    }
+
+    @Test
+    void pemPublicKeyHasNoCertificate() throws Exception {
+        Path file = TestEnvelopes.writePem(directory, "acme", caKeys.getPublic());
+        TrustedKey key = KeyFiles.loadSingle(file, null);
+        assertEquals(caKeys.getPublic(), key.getPublicKey());
+        assertNull(key.getCertificate());
+        assertEquals(Long.MIN_VALUE, key.getNotBefore());
+        assertEquals(Long.MAX_VALUE, key.getNotAfter());
+    }
+
+    @Test
+    void pemCertificateCarriesValidity() throws Exception {
+        Path file = TestCertificates.writePem(directory.resolve("acme.pem"), firstLeaf);
+        TrustedKey key = KeyFiles.loadSingle(file, null);
+        assertEquals(firstLeaf, key.getCertificate());
+        assertEquals(firstLeaf.getPublicKey(), key.getPublicKey());
+        assertEquals(firstLeaf.getNotBefore().getTime(), key.getNotBefore());
+        assertEquals(firstLeaf.getNotAfter().getTime(), key.getNotAfter());
+    }
+
+    @Test
+    void derCertificateIsRead() throws Exception {
+        Path file = Files.write(directory.resolve("acme.cer"), firstLeaf.getEncoded());
+        assertEquals(firstLeaf, KeyFiles.loadSingle(file, null).getCertificate());
+    }
+
+    @Test
+    void chainFileYieldsOnlyEndEntities() throws Exception {
+        Path chain = TestCertificates.writePem(directory.resolve("chain.crt"), firstLeaf, ca, secondLeaf);
+        assertEquals(List.of(firstLeaf, secondLeaf), certificates(KeyFiles.load(chain, null)));
+
+        Exception e = assertThrows(Exception.class, () -> KeyFiles.loadSingle(chain, null));
+        assertTrue(e.getMessage().contains("found 2"), e.getMessage());
+
+        Path caOnly = TestCertificates.writePem(directory.resolve("ca.pem"), ca);
+        assertEquals(List.of(ca), certificates(KeyFiles.load(caOnly, null)));
+    }
+
+    @Test
+    void pkcs12WithPasswordYieldsEntriesInAliasOrder() throws Exception {
+        Path file = writeKeyStore("PKCS12", "acme.p12");
+        assertEquals(List.of(firstLeaf, secondLeaf), certificates(KeyFiles.load(file, PASSWORD)));
+
+        Exception e = assertThrows(Exception.class, () -> KeyFiles.load(file, "wrong".toCharArray()));
+        assertTrue(e.getMessage().contains(file.toString()), e.getMessage());
+    }
+
+    @Test
+    void jksYieldsEntriesInAliasOrder() throws Exception {
+        Path file = writeKeyStore("JKS", "acme.jks");
+        assertEquals(List.of(firstLeaf, secondLeaf), certificates(KeyFiles.load(file, PASSWORD)));
+    }
+
+    @Test
+    void fileTypeIsTakenFromExtension() throws Exception {
+        for (String name : List.of("a.pem", "a.CRT", "a.cer", "a.der", "a.p12", "a.pfx", "a.jks")) {
+            assertTrue(KeyFiles.isKeyFile(name), name);
+        }
+        assertFalse(KeyFiles.isKeyFile("a.txt"));
+        assertFalse(KeyFiles.isKeyFile("a.pem.tmp"));
+
+        Path text = Files.writeString(directory.resolve("acme.txt"), "text");
+        Exception e = assertThrows(Exception.class, () -> KeyFiles.load(text, null));
+        assertTrue(e.getMessage().startsWith("Unsupported key file type"), e.getMessage());
+    }
+
+    /**
+     * Псевдонимы записаны в обратном порядке, чтобы проверить сортировку при загрузке.
+     */
+    private Path writeKeyStore(String type, String fileName) throws Exception {
+        KeyStore keyStore = KeyStore.getInstance(type);
+        keyStore.load(null, null);
+        keyStore.setCertificateEntry("b-second", secondLeaf);
+        keyStore.setCertificateEntry("a-first", firstLeaf);
+        Path file = directory.resolve(fileName);
+        try (OutputStream out = Files.newOutputStream(file)) {
+            keyStore.store(out, PASSWORD);
+        }
+        return file;
+    }
+
+    private static List<X509Certificate> certificates(List<TrustedKey> keys) {
+        return keys.stream().map(TrustedKey::getCertificate).collect(Collectors.toList());
+    }
+}
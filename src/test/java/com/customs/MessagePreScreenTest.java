@@ -0,0 +1,166 @@
+package com.customs;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.util.Base64;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Предварительная проверка отклоняет сообщение только тогда, когда полный путь тоже его не принимает.
+ */
+class MessagePreScreenTest {
+
+    private static final String SIGNATURE = "<Signature>" + TestEnvelopes.SIGNATURE + "</Signature>";
+    /**
+     * Подпись длины модуля 2048-битного ключа, которая проходит сверку длины.
+     */
+    private static final String MODULUS_LENGTH_SIGNATURE = "<Signature>" + Base64.getEncoder().encodeToString(new byte[256]) + "</Signature>";
+
+    @TempDir
+    static Path keyDirectory;
+    private static KeyPair keyPair;
+    private static File keyFile;
+
+    private final SignatureVerifier verifier = SignatureVerifier.builder().build();
+    private final SignatureVerifier fullPathVerifier = SignatureVerifier.builder().preScreen(false).build();
+
+    @BeforeAll
+    static void generateKey() throws Exception {
+        keyPair = TestEnvelopes.rsaKeyPair();
+        keyFile = TestEnvelopes.writePem(keyDirectory, "key", keyPair.getPublic()).toFile();
+    }
+
+    @Test
+    void namespacedSignatureBeforeRealOneIsSkipped() throws Exception {
+        assertAccepted(TestEnvelopes.envelope("<Signature xmlns=\"urn:other\">AAAA</Signature>" + SIGNATURE, TestEnvelopes.BODY));
+    }
+
+    @Test
+    void prefixedSignatureBeforeRealOneIsSkipped() throws Exception {
+        assertAccepted(TestEnvelopes.envelope("<o:Signature xmlns:o=\"urn:other\">AAAA</o:Signature>" + SIGNATURE, TestEnvelopes.BODY));
+    }
+
+    @Test
+    void foreignHeaderBeforeSoapHeaderIsSkipped() throws Exception {
+        String template = TestEnvelopes.envelope(SIGNATURE, TestEnvelopes.BODY)
+                .replace("<soap:Header>", "<x:Header xmlns:x=\"urn:x\"><Signature>AAAA</Signature></x:Header><soap:Header>");
+        assertAccepted(template);
+    }
+
+    @Test
+    void emptyNamespacedSignatureBeforeRealOneIsSkipped() throws Exception {
+        assertAccepted(TestEnvelopes.envelope("<Signature xmlns=\"urn:other\"/>" + SIGNATURE, TestEnvelopes.BODY));
+    }
+
+    @Test
+    void defaultNamespaceEnvelopeWithUndeclaredSignatureNamespace() throws Exception {
+        String template = "<Envelope xmlns=\"" + TestEnvelopes.SOAP_NAMESPACE + "\"><Header>"
+                + "<Signature xmlns=\"\">" + TestEnvelopes.SIGNATURE + "</Signature></Header>"
+                + "<Body>" + TestEnvelopes.BODY + "</Body></Envelope>";
+        assertAccepted(template);
+    }
+
+    @Test
+    void signatureInheritingSoapNamespaceIsNotTheSignature() throws Exception {
+        String message = "<Envelope xmlns=\"" + TestEnvelopes.SOAP_NAMESPACE + "\"><Header><Signature>AAAA</Signature></Header>"
+                + "<Body>" + TestEnvelopes.BODY + "</Body></Envelope>";
+        assertRejected(message, VerificationException.Reason.SIGNATURE_MISSING);
+    }
+
+    @Test
+    void missingSignatureIsRejected() throws Exception {
+        assertRejected(TestEnvelopes.envelope("<Other>AAAA</Other>", TestEnvelopes.BODY), VerificationException.Reason.SIGNATURE_MISSING);
+    }
+
+    @Test
+    void emptySignatureIsRejected() throws Exception {
+        assertRejected(TestEnvelopes.envelope("<Signature> </Signature><Signature>AAAA</Signature>", TestEnvelopes.BODY),
+                VerificationException.Reason.SIGNATURE_MISSING);
+    }
+
+    @Test
+    void signatureLengthMismatchIsRejected() throws Exception {
+        assertRejected(TestEnvelopes.envelope("<Signature>AAAA</Signature>", TestEnvelopes.BODY),
+                VerificationException.Reason.SIGNATURE_LENGTH_MISMATCH);
+    }
+
+    @Test
+    void missingBodyIsRejected() throws Exception {
+        String message = TestEnvelopes.envelope(MODULUS_LENGTH_SIGNATURE, TestEnvelopes.BODY)
+                .replace("soap:Body", "soap:Trailer");
+        assertRejected(message, VerificationException.Reason.BODY_MISSING);
+    }
+
+    @Test
+    void bodyInForeignNamespaceIsNotTheBody() throws Exception {
+        String message = TestEnvelopes.envelope(MODULUS_LENGTH_SIGNATURE, TestEnvelopes.BODY)
+                .replace("<soap:Body>", "<x:Body xmlns:x=\"urn:x\">").replace("</soap:Body>", "</x:Body>");
+        assertRejected(message, VerificationException.Reason.BODY_MISSING);
+    }
+
+    @Test
+    void rootOtherThanEnvelopeIsRejected() throws Exception {
+        assertRejected("<Message><Signature>AAAA</Signature></Message>", VerificationException.Reason.ENVELOPE_MISSING);
+    }
+
+    @Test
+    void strayEndTagsBeforeRootAreLeftToFullParse() {
+        MessagePreScreen preScreen = new MessagePreScreen(Set.of(TestEnvelopes.SOAP_NAMESPACE), "Signature");
+        String envelope = TestEnvelopes.envelope(MODULUS_LENGTH_SIGNATURE, TestEnvelopes.BODY);
+        for (String message : new String[]{"</a></b>", "</a></b><c>", "</a>" + envelope.substring(envelope.indexOf("<soap:"))}) {
+            byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+            assertDoesNotThrow(() -> preScreen.check(ByteBuffer.wrap(bytes), keyPair.getPublic()), message);
+            Exception e = assertThrows(Exception.class, () -> verifier.verify(bytes, keyFile), message);
+            assertFalse(e instanceof VerificationException || e instanceof RuntimeException, e.toString());
+        }
+    }
+
+    @Test
+    void unknownEnvelopeNamespaceIsLeftToFullParse() throws Exception {
+        String message = TestEnvelopes.envelope("", TestEnvelopes.BODY).replace(TestEnvelopes.SOAP_NAMESPACE, "urn:unknown");
+        assertFullPathFails(message);
+    }
+
+    /**
+     * Подписанный конверт проходит и с предварительной проверкой, и без нее.
+     */
+    private void assertAccepted(String template) throws Exception {
+        byte[] message = TestEnvelopes.sign(template, keyPair.getPrivate(), "SHA512withRSA");
+        assertTrue(fullPathVerifier.verify(message, keyFile), "full path");
+        assertTrue(verifier.verify(message, keyFile), "with pre-screen");
+    }
+
+    /**
+     * Предварительная проверка отклоняет сообщение с указанной причиной, а полный путь его тоже не принимает.
+     */
+    private void assertRejected(String message, VerificationException.Reason reason) {
+        byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        VerificationException e = assertThrows(VerificationException.class, () -> verifier.verify(bytes, keyFile));
+        assertEquals(reason, e.getReason());
+        assertFullPathFails(message);
+    }
+
+    private void assertFullPathFails(String message) {
+        byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        boolean valid;
+        try {
+            valid = fullPathVerifier.verify(ByteBuffer.wrap(bytes), keyFile);
+        } catch (Exception e) {
+            valid = false;
+        }
+        assertFalse(valid, "full path accepted a message the pre-screen rejects");
+    }
+}
@@ -0,0 +1,114 @@
+package com.customs;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Ограничения разбора и запрет внешних сущностей на DOM- и StAX-пути.
+ */
+class ParserLimitsTest {
+
+    private static final String SECRET = "top-secret-content";
+
+    @TempDir
+    Path directory;
+
+    private final SignatureVerifier doctypeVerifier = SignatureVerifier.builder().allowDoctype(true).build();
+
+    @Test
+    void doctypeIsRejectedByDefault() {
+        SignatureVerifier verifier = SignatureVerifier.builder().build();
+        byte[] message = withDoctype("<!ENTITY i \"inner\">", "<d>&i;</d>");
+        assertThrows(Exception.class, () -> verifier.parse(new ByteArrayInputStream(message)));
+        assertThrows(Exception.class, () -> verifier.canonicalizeSoapBodyStreaming(new ByteArrayInputStream(message)));
+    }
+
+    @Test
+    void internalEntitiesAreExpandedWhenDoctypeIsAllowed() throws Exception {
+        byte[] message = withDoctype("<!ENTITY i \"inner\">", "<d>&i;</d>");
+        byte[] dom = canonicalDom(message);
+        assertArrayEquals("<d>inner</d>".getBytes(StandardCharsets.UTF_8), dom);
+        assertArrayEquals(dom, doctypeVerifier.canonicalizeSoapBodyStreaming(new ByteArrayInputStream(message)));
+    }
+
+    @Test
+    void externalGeneralEntityIsNeverRead() throws Exception {
+        Path secret = Files.writeString(directory.resolve("secret.txt"), SECRET);
+        byte[] message = withDoctype("<!ENTITY x SYSTEM \"" + secret.toUri() + "\">", "<d>&x;</d>");
+        assertFalse(leaks(() -> canonicalDom(message)), "DOM path read the external entity");
+        assertFalse(leaks(() -> doctypeVerifier.canonicalizeSoapBodyStreaming(new ByteArrayInputStream(message))),
+                "StAX path read the external entity");
+    }
+
+    @Test
+    void externalParameterEntityAndDtdAreNeverRead() throws Exception {
+        Path dtd = Files.writeString(directory.resolve("external.dtd"), "<!ENTITY leak \"" + SECRET + "\">");
+        byte[] parameter = withDoctype("<!ENTITY % p SYSTEM \"" + dtd.toUri() + "\"> %p;", "<d>&leak;</d>");
+        assertFalse(leaks(() -> canonicalDom(parameter)), "DOM path read the external parameter entity");
+        assertFalse(leaks(() -> doctypeVerifier.canonicalizeSoapBodyStreaming(new ByteArrayInputStream(parameter))),
+                "StAX path read the external parameter entity");
+
+        byte[] external = envelope("<!DOCTYPE soap:Envelope SYSTEM \"" + dtd.toUri() + "\">", "<d>&leak;</d>");
+        assertFalse(leaks(() -> canonicalDom(external)), "DOM path read the external DTD");
+        assertFalse(leaks(() -> doctypeVerifier.canonicalizeSoapBodyStreaming(new ByteArrayInputStream(external))),
+                "StAX path read the external DTD");
+    }
+
+    @Test
+    void elementDepthIsLimited() {
+        SignatureVerifier verifier = SignatureVerifier.builder().maxElementDepth(20).build();
+        byte[] message = envelope("", "<d>".repeat(30) + "</d>".repeat(30));
+        assertThrows(Exception.class, () -> verifier.parse(new ByteArrayInputStream(message)));
+        assertThrows(Exception.class, () -> verifier.canonicalizeSoapBodyStreaming(new ByteArrayInputStream(message)));
+    }
+
+    @Test
+    void documentSizeIsLimited() throws Exception {
+        SignatureVerifier verifier = SignatureVerifier.builder().maxDocumentBytes(1024).build();
+        byte[] message = envelope("", "<d>" + "x".repeat(2048) + "</d>");
+        assertThrows(Exception.class, () -> verifier.parse(new ByteArrayInputStream(message)));
+        assertThrows(Exception.class, () -> verifier.canonicalizeSoapBodyStreaming(new ByteArrayInputStream(message)));
+        SignatureVerifier unlimited = SignatureVerifier.builder().build();
+        assertNotNull(unlimited.parse(new ByteArrayInputStream(message)).getDocumentElement());
+    }
+
+    private byte[] canonicalDom(byte[] message) throws Exception {
+        return doctypeVerifier.canonicalizeSoapBody(doctypeVerifier.parse(new ByteArrayInputStream(message)));
+    }
+
+    /**
+     * @return true, если каноническая форма содержит содержимое внешнего файла; ошибка разбора утечкой не считается.
+     */
+    private static boolean leaks(Canonicalization canonicalization) {
+        try {
+            return new String(canonicalization.run(), StandardCharsets.UTF_8).contains(SECRET);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static byte[] withDoctype(String internalSubset, String body) {
+        return envelope("<!DOCTYPE soap:Envelope [" + internalSubset + "]>", body);
+    }
+
+    private static byte[] envelope(String doctype, String body) {
+        return ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" + doctype
+                + "<soap:Envelope xmlns:soap=\"" + SoapVersion.SOAP_2001_06.getNamespace() + "\">"
+                + "<soap:Header><Signature>AAAA</Signature></soap:Header><soap:Body>" + body + "</soap:Body></soap:Envelope>")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    private interface Canonicalization {
+        byte[] run() throws Exception;
+    }
+}
@@ -0,0 +1,111 @@
+package com.customs;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.PublicKey;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Поиск ключей отправителя по имени файла и проверка подписи через индекс каталога.
+ */
+class PemDirectoryKeyIndexTest {
+
+    private static final String SIGNATURE = "<Signature>" + TestEnvelopes.SIGNATURE + "</Signature>";
+
+    private static KeyPair oldKeys;
+    private static KeyPair newKeys;
+    private static KeyPair otherKeys;
+
+    @TempDir
+    Path directory;
+    private PemDirectoryKeyIndex index;
+
+    @BeforeAll
+    static void generateKeys() throws Exception {
+        oldKeys = TestEnvelopes.rsaKeyPair();
+        newKeys = TestEnvelopes.rsaKeyPair();
+        otherKeys = TestEnvelopes.rsaKeyPair();
+    }
+
+    @BeforeEach
+    void writeKeys() throws Exception {
+        TestEnvelopes.writePem(directory, "acme", oldKeys.getPublic());
+        TestEnvelopes.writePem(directory, "acme.2025", newKeys.getPublic());
+        index = new PemDirectoryKeyIndex(directory);
+    }
+
+    @Test
+    void oldAndNewKeysOfSenderAreBothAccepted() throws Exception {
+        assertEquals(1, index.size());
+        // Ключи идут в порядке имен файлов: acme.2025.pem раньше acme.pem
+        assertEquals(List.of(newKeys.getPublic(), oldKeys.getPublic()), keys("acme"));
+
+        SignatureVerifier verifier = SignatureVerifier.builder().build();
+        String template = TestEnvelopes.envelope("<Sender>acme</Sender>" + SIGNATURE, TestEnvelopes.BODY);
+        assertTrue(verifier.verify(TestEnvelopes.sign(template, oldKeys.getPrivate(), "SHA512withRSA"), index));
+        assertTrue(verifier.verify(TestEnvelopes.sign(template, newKeys.getPrivate(), "SHA512withRSA"), index));
+        assertFalse(verifier.verify(TestEnvelopes.sign(template, otherKeys.getPrivate(), "SHA512withRSA"), index));
+    }
+
+    @Test
+    void unknownSenderIsRejected() throws Exception {
+        assertTrue(index.resolve("beta").isEmpty());
+        String template = TestEnvelopes.envelope("<Sender> beta </Sender>" + SIGNATURE, TestEnvelopes.BODY);
+        byte[] message = TestEnvelopes.sign(template, otherKeys.getPrivate(), "SHA512withRSA");
+        Exception e = assertThrows(Exception.class, () -> SignatureVerifier.builder().build().verify(message, index));
+        assertEquals("No trusted public key for sender: beta", e.getMessage());
+    }
+
+    @Test
+    void missingSenderIsRejected() throws Exception {
+        byte[] message = TestEnvelopes.sign(TestEnvelopes.envelope(SIGNATURE, TestEnvelopes.BODY),
+                oldKeys.getPrivate(), "SHA512withRSA");
+        Exception e = assertThrows(Exception.class, () -> SignatureVerifier.builder().build().verify(message, index));
+        assertTrue(e.getMessage().startsWith("Sender element not found in SOAP Header"), e.getMessage());
+    }
+
+    @Test
+    void senderElementNameIsConfigurable() throws Exception {
+        String template = TestEnvelopes.envelope("<From>acme</From>" + SIGNATURE, TestEnvelopes.BODY);
+        byte[] message = TestEnvelopes.sign(template, oldKeys.getPrivate(), "SHA512withRSA");
+        assertTrue(SignatureVerifier.builder().senderElementName("From").build().verify(message, index));
+
+        Exception e = assertThrows(Exception.class, () -> SignatureVerifier.builder().build().verify(message, index));
+        assertTrue(e.getMessage().endsWith("/soap:Header/Sender"), e.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> SignatureVerifier.builder().senderElementName("a:From"));
+        assertThrows(NullPointerException.class, () -> SignatureVerifier.builder().senderElementName(null));
+    }
+
+    @Test
+    void rebuildKeepsPreviousIndexWhenFileIsBroken() throws Exception {
+        TestEnvelopes.writePem(directory, "beta", otherKeys.getPublic());
+        Path broken = Files.writeString(directory.resolve("gamma.pem"), "not a key");
+        Exception e = assertThrows(Exception.class, index::rebuild);
+        assertTrue(e.getMessage().contains("gamma.pem"), e.getMessage());
+        assertTrue(index.resolve("beta").isEmpty());
+        assertEquals(2, keys("acme").size());
+
+        Files.delete(broken);
+        Files.delete(directory.resolve("acme.pem"));
+        index.rebuild();
+        assertEquals(List.of(otherKeys.getPublic()), keys("beta"));
+        assertEquals(List.of(newKeys.getPublic()), keys("acme"));
+        assertEquals(2, index.size());
+    }
+
+    private List<PublicKey> keys(String sender) {
+        return index.resolve(sender).stream().map(TrustedKey::getPublicKey).collect(Collectors.toList());
+    }
+}
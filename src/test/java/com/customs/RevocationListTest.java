@@ -0,0 +1,55 @@
+package com.customs;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Поиск отозванных номеров в long[] (до 63 бит) и в BigInteger[] (длиннее).
+ */
+class RevocationListTest {
+
+    private static final BigInteger LONG_MAX = BigInteger.valueOf(Long.MAX_VALUE);
+    private static final BigInteger BIT_63 = BigInteger.ONE.shiftLeft(63);
+    private static final BigInteger LARGE = BigInteger.ONE.shiftLeft(159).add(BigInteger.valueOf(5));
+
+    @Test
+    void serialsUpTo63BitsAndLongerAreFound() {
+        RevocationList list = new RevocationList(
+                List.of(BigInteger.valueOf(42), BigInteger.ONE, LONG_MAX, BIT_63, LARGE), 1_000L);
+        assertEquals(5, list.size());
+        assertEquals(1_000L, list.nextUpdate());
+        for (BigInteger serial : List.of(BigInteger.ONE, BigInteger.valueOf(42), LONG_MAX, BIT_63, LARGE)) {
+            assertTrue(list.isRevoked(serial), serial.toString(16));
+        }
+        for (BigInteger serial : List.of(BigInteger.ZERO, BigInteger.valueOf(43), LONG_MAX.subtract(BigInteger.ONE),
+                BIT_63.add(BigInteger.ONE), LARGE.subtract(BigInteger.ONE), BigInteger.valueOf(42).negate())) {
+            assertFalse(list.isRevoked(serial), serial.toString(16));
+        }
+    }
+
+    @Test
+    void crlEntriesAndNextUpdateAreRead() throws Exception {
+        KeyPair issuer = TestEnvelopes.rsaKeyPair();
+        Instant thisUpdate = Instant.ofEpochSecond(1_700_000_000L);
+        Instant nextUpdate = thisUpdate.plusSeconds(86_400);
+        RevocationList list = RevocationList.of(TestCertificates.crl("CN=CA", issuer.getPrivate(), thisUpdate, nextUpdate,
+                BigInteger.valueOf(7), LARGE));
+        assertEquals(2, list.size());
+        assertEquals(nextUpdate.toEpochMilli(), list.nextUpdate());
+        assertTrue(list.isRevoked(BigInteger.valueOf(7)));
+        assertTrue(list.isRevoked(LARGE));
+        assertFalse(list.isRevoked(BigInteger.valueOf(8)));
+
+        RevocationList empty = RevocationList.of(TestCertificates.crl("CN=CA", issuer.getPrivate(), thisUpdate, nextUpdate));
+        assertEquals(0, empty.size());
+        assertFalse(empty.isRevoked(BigInteger.valueOf(7)));
+    }
+}
@@ -0,0 +1,83 @@
+package com.customs;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.spec.MGF1ParameterSpec;
+import java.security.spec.PSSParameterSpec;
+import java.security.spec.RSAKeyGenParameterSpec;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Выбор алгоритма подписи по типу ключа, в том числе для ключей RSASSA-PSS.
+ */
+class SignatureAlgorithmSelectionTest {
+
+    private static final String TEMPLATE = TestEnvelopes.envelope(
+            "<Sender>s</Sender><Signature>" + TestEnvelopes.SIGNATURE + "</Signature>", TestEnvelopes.BODY);
+    private static final PSSParameterSpec PSS_SHA384 =
+            new PSSParameterSpec("SHA-384", "MGF1", MGF1ParameterSpec.SHA384, 48, 1);
+
+    @TempDir
+    static Path keyDirectory;
+    private static KeyPair rsaKeyPair;
+    private static KeyPair pssKeyPair;
+    private static KeyPair pssSha384KeyPair;
+
+    private final SignatureVerifier verifier = SignatureVerifier.builder().build();
+
+    @BeforeAll
+    static void generateKeys() throws Exception {
+        rsaKeyPair = TestEnvelopes.rsaKeyPair();
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSASSA-PSS");
+        generator.initialize(2048);
+        pssKeyPair = generator.generateKeyPair();
+        generator.initialize(new RSAKeyGenParameterSpec(2048, RSAKeyGenParameterSpec.F4, PSS_SHA384));
+        pssSha384KeyPair = generator.generateKeyPair();
+    }
+
+    @Test
+    void pssKeyWithoutParametersUsesPss() throws Exception {
+        assertEquals("RSASSA-PSS", pssKeyPair.getPublic().getAlgorithm());
+        byte[] message = TestEnvelopes.sign(TEMPLATE, pssKeyPair.getPrivate(), "RSASSA-PSS",
+                SignatureAlgorithm.RSA_PSS_SHA256.parameters());
+        assertTrue(verifier.verify(message, TestEnvelopes.writePem(keyDirectory, "pss", pssKeyPair.getPublic()).toFile()));
+    }
+
+    @Test
+    void pssKeyParametersTakePrecedence() throws Exception {
+        byte[] message = TestEnvelopes.sign(TEMPLATE, pssSha384KeyPair.getPrivate(), "RSASSA-PSS", PSS_SHA384);
+        assertTrue(verifier.verify(message, TestEnvelopes.writePem(keyDirectory, "pss384", pssSha384KeyPair.getPublic()).toFile()));
+        // Signature потока не должен унаследовать параметры ключа
+        byte[] pssMessage = TestEnvelopes.sign(TEMPLATE, pssKeyPair.getPrivate(), "RSASSA-PSS",
+                SignatureAlgorithm.RSA_PSS_SHA256.parameters());
+        assertTrue(verifier.verify(pssMessage, keyResolver(pssKeyPair)));
+        assertFalse(verifier.verify(pssMessage, keyResolver(pssSha384KeyPair)));
+    }
+
+    @Test
+    void pssKeyAmongRsaKeys() throws Exception {
+        KeyResolver keyResolver = keyResolver(rsaKeyPair, pssKeyPair);
+        assertTrue(verifier.verify(TestEnvelopes.sign(TEMPLATE, pssKeyPair.getPrivate(), "RSASSA-PSS",
+                SignatureAlgorithm.RSA_PSS_SHA256.parameters()), keyResolver));
+        assertTrue(verifier.verify(TestEnvelopes.sign(TEMPLATE, rsaKeyPair.getPrivate(), "SHA512withRSA"), keyResolver));
+    }
+
+    private static KeyResolver keyResolver(KeyPair... keyPairs) {
+        return sender -> {
+            TrustedKey[] keys = new TrustedKey[keyPairs.length];
+            for (int i = 0; i < keyPairs.length; i++) {
+                keys[i] = TrustedKey.of(keyPairs[i].getPublic());
+            }
+            return List.of(keys);
+        };
+    }
+}
@@ -0,0 +1,156 @@
+package com.customs;
+
+import javax.security.auth.x500.X500Principal;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509CRL;
+import java.security.cert.X509Certificate;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Base64;
+
+/**
+ * Выпуск тестовых сертификатов X.509 и CRL без внешних библиотек: DER собирается вручную,
+ * подпись SHA256withRSA. Время округляется до секунд, как в самих сертификатах.
+ */
+final class TestCertificates {
+
+    private static final String SHA256_WITH_RSA = "1.2.840.113549.1.1.11";
+    private static final String BASIC_CONSTRAINTS = "2.5.29.19";
+    private static final DateTimeFormatter UTC_TIME = DateTimeFormatter.ofPattern("yyMMddHHmmss'Z'").withZone(ZoneOffset.UTC);
+    private static final DateTimeFormatter GENERALIZED_TIME = DateTimeFormatter.ofPattern("yyyyMMddHHmmss'Z'").withZone(ZoneOffset.UTC);
+
+    private TestCertificates() {
+    }
+
+    /**
+     * @param subject DN субъекта, например "CN=Leaf".
+     * @param publicKey Ключ субъекта.
+     * @param issuer DN издателя; совпадает с subject для самоподписанного сертификата.
+     * @param issuerKey Ключ подписи издателя.
+     * @param serial Серийный номер.
+     * @param notBefore Начало срока действия.
+     * @param notAfter Конец срока действия.
+     * @param ca true для сертификата CA (basicConstraints cA=true).
+     */
+    static X509Certificate certificate(String subject, PublicKey publicKey, String issuer, PrivateKey issuerKey,
+                                       BigInteger serial, Instant notBefore, Instant notAfter, boolean ca) throws Exception {
+        byte[] extensions = ca
+                ? der(0xA3, der(0x30, der(0x30, oid(BASIC_CONSTRAINTS), der(0x01, new byte[]{(byte) 0xFF}),
+                        der(0x04, der(0x30, der(0x01, new byte[]{(byte) 0xFF}))))))
+                : new byte[0];
+        byte[] tbs = der(0x30,
+                der(0xA0, der(0x02, new byte[]{2})),
+                der(0x02, serial.toByteArray()),
+                algorithm(),
+                new X500Principal(issuer).getEncoded(),
+                der(0x30, time(notBefore), time(notAfter)),
+                new X500Principal(subject).getEncoded(),
+                publicKey.getEncoded(),
+                extensions);
+        return (X509Certificate) CertificateFactory.getInstance("X.509")
+                .generateCertificate(new ByteArrayInputStream(signed(tbs, issuerKey)));
+    }
+
+    /**
+     * @param issuer DN издателя CRL.
+     * @param issuerKey Ключ подписи издателя.
+     * @param thisUpdate Время выпуска.
+     * @param nextUpdate Время следующего выпуска.
+     * @param revoked Отозванные серийные номера.
+     */
+    static X509CRL crl(String issuer, PrivateKey issuerKey, Instant thisUpdate, Instant nextUpdate,
+                       BigInteger... revoked) throws Exception {
+        byte[][] entries = new byte[revoked.length][];
+        for (int i = 0; i < revoked.length; i++) {
+            entries[i] = der(0x30, der(0x02, revoked[i].toByteArray()), time(thisUpdate));
+        }
+        byte[] tbs = der(0x30,
+                algorithm(),
+                new X500Principal(issuer).getEncoded(),
+                time(thisUpdate),
+                time(nextUpdate),
+                revoked.length == 0 ? new byte[0] : der(0x30, entries));
+        return (X509CRL) CertificateFactory.getInstance("X.509").generateCRL(new ByteArrayInputStream(signed(tbs, issuerKey)));
+    }
+
+    /**
+     * Записывает сертификаты в PEM-файл по порядку.
+     */
+    static Path writePem(Path file, X509Certificate... certificates) throws Exception {
+        StringBuilder pem = new StringBuilder();
+        for (X509Certificate certificate : certificates) {
+            pem.append("-----BEGIN CERTIFICATE-----\n")
+                    .append(Base64.getMimeEncoder(64, new byte[]{'\n'}).encodeToString(certificate.getEncoded()))
+                    .append("\n-----END CERTIFICATE-----\n");
+        }
+        return Files.write(file, pem.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static byte[] signed(byte[] tbs, PrivateKey issuerKey) throws Exception {
+        Signature signature = Signature.getInstance("SHA256withRSA");
+        signature.initSign(issuerKey);
+        signature.update(tbs);
+        byte[] value = signature.sign();
+        byte[] bits = new byte[value.length + 1];
+        System.arraycopy(value, 0, bits, 1, value.length);
+        return der(0x30, tbs, algorithm(), der(0x03, bits));
+    }
+
+    private static byte[] algorithm() {
+        return der(0x30, oid(SHA256_WITH_RSA), der(0x05));
+    }
+
+    private static byte[] time(Instant instant) {
+        return instant.atZone(ZoneOffset.UTC).getYear() < 2050
+                ? der(0x17, UTC_TIME.format(instant).getBytes(StandardCharsets.US_ASCII))
+                : der(0x18, GENERALIZED_TIME.format(instant).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static byte[] oid(String dotted) {
+        String[] arcs = dotted.split("\\.");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(Integer.parseInt(arcs[0]) * 40 + Integer.parseInt(arcs[1]));
+        for (int i = 2; i < arcs.length; i++) {
+            long arc = Long.parseLong(arcs[i]);
+            int groups = 1;
+            while ((arc >> (7 * groups)) != 0) {
+                groups++;
+            }
+            for (int g = groups - 1; g >= 0; g--) {
+                out.write((int) ((arc >> (7 * g)) & 0x7F) | (g > 0 ? 0x80 : 0));
+            }
+        }
+        return der(0x06, out.toByteArray());
+    }
+
+    private static byte[] der(int tag, byte[]... contents) {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        for (byte[] part : contents) {
+            content.writeBytes(part);
+        }
+        int length = content.size();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(length + 6);
+        out.write(tag);
+        if (length < 0x80) {
+            out.write(length);
+        } else {
+            int bytes = length < 0x100 ? 1 : length < 0x10000 ? 2 : 3;
+            out.write(0x80 | bytes);
+            for (int i = bytes - 1; i >= 0; i--) {
+                out.write(length >> (8 * i));
+            }
+        }
+        out.writeBytes(content.toByteArray());
+        return out.toByteArray();
+    }
+}
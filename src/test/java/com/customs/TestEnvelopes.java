@@ -0,0 +1,87 @@
+package com.customs;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.Base64;
+
+/**
+ * Построение и подпись тестовых SOAP-конвертов.
+ */
+final class TestEnvelopes {
+
+    static final String SOAP_NAMESPACE = SoapVersion.SOAP_2001_06.getNamespace();
+
+    /**
+     * Место подписи в шаблоне конверта.
+     */
+    static final String SIGNATURE = "{signature}";
+
+    static final String BODY = "<m:Decl xmlns:m=\"urn:m\" b=\"2\" a=\"1\"><m:Item id=\"1\">Товар &amp; 😀</m:Item></m:Decl>";
+
+    private TestEnvelopes() {
+    }
+
+    /**
+     * @param header Содержимое soap:Header.
+     * @param body Содержимое soap:Body.
+     * @return Конверт SOAP 2001/06 с префиксом soap.
+     */
+    static String envelope(String header, String body) {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<soap:Envelope xmlns:soap=\"" + SOAP_NAMESPACE + "\">"
+                + "<soap:Header>" + header + "</soap:Header><soap:Body>" + body + "</soap:Body></soap:Envelope>";
+    }
+
+    /**
+     * Подписывает Body шаблона и подставляет подпись вместо {@link #SIGNATURE}.
+     * @param template Конверт с местом подписи.
+     * @param privateKey Ключ подписи.
+     * @param algorithm Имя алгоритма подписи JCA.
+     * @return Байты подписанного конверта в UTF-8.
+     */
+    static byte[] sign(String template, PrivateKey privateKey, String algorithm) throws Exception {
+        return sign(template, privateKey, algorithm, null);
+    }
+
+    /**
+     * Подписывает Body шаблона алгоритмом с параметрами и подставляет подпись вместо {@link #SIGNATURE}.
+     * @param parameters Параметры алгоритма или null.
+     */
+    static byte[] sign(String template, PrivateKey privateKey, String algorithm, AlgorithmParameterSpec parameters)
+            throws Exception {
+        SignatureVerifier verifier = SignatureVerifier.builder().preScreen(false).build();
+        byte[] canonical = verifier.canonicalizeSoapBody(verifier.parse(
+                new ByteArrayInputStream(template.replace(SIGNATURE, "").getBytes(StandardCharsets.UTF_8))));
+        Signature signature = Signature.getInstance(algorithm);
+        if (parameters != null) {
+            signature.setParameter(parameters);
+        }
+        signature.initSign(privateKey);
+        signature.update(canonical);
+        return template.replace(SIGNATURE, Base64.getEncoder().encodeToString(signature.sign())).getBytes(StandardCharsets.UTF_8);
+    }
+
+    static KeyPair rsaKeyPair() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        return generator.generateKeyPair();
+    }
+
+    /**
+     * Записывает публичный ключ в PEM-файл SubjectPublicKeyInfo.
+     */
+    static Path writePem(Path directory, String name, PublicKey publicKey) throws Exception {
+        Path file = directory.resolve(name + ".pem");
+        Files.writeString(file, "-----BEGIN PUBLIC KEY-----\n"
+                + Base64.getMimeEncoder(64, new byte[]{'\n'}).encodeToString(publicKey.getEncoded())
+                + "\n-----END PUBLIC KEY-----\n");
+        return file;
+    }
+}
@@ -0,0 +1,49 @@
+package com.customs;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Границы срока действия: notBefore и notAfter входят в срок.
+ */
+class TrustedKeyTest {
+
+    @Test
+    void validityBoundsAreInclusive() throws Exception {
+        KeyPair keys = TestEnvelopes.rsaKeyPair();
+        Instant notBefore = Instant.parse("2025-01-01T00:00:00Z");
+        Instant notAfter = Instant.parse("2026-01-01T00:00:00Z");
+        TrustedKey key = TrustedKey.of(TestCertificates.certificate("CN=Acme", keys.getPublic(), "CN=Acme",
+                keys.getPrivate(), BigInteger.ONE, notBefore, notAfter, false));
+        long from = notBefore.toEpochMilli();
+        long to = notAfter.toEpochMilli();
+
+        assertDoesNotThrow(() -> key.checkValidAt(from));
+        assertDoesNotThrow(() -> key.checkValidAt(to));
+        assertTrue(key.isValidAt(from));
+        assertTrue(key.isValidAt(to));
+
+        Exception early = assertThrows(Exception.class, () -> key.checkValidAt(from - 1));
+        assertTrue(early.getMessage().contains("'CN=Acme' is not valid before 2025-01-01T00:00:00Z"), early.getMessage());
+        Exception late = assertThrows(Exception.class, () -> key.checkValidAt(to + 1));
+        assertTrue(late.getMessage().contains("'CN=Acme' expired at 2026-01-01T00:00:00Z"), late.getMessage());
+        assertFalse(key.isValidAt(from - 1));
+        assertFalse(key.isValidAt(to + 1));
+    }
+
+    @Test
+    void keyWithoutCertificateIsAlwaysValid() throws Exception {
+        TrustedKey key = TrustedKey.of(TestEnvelopes.rsaKeyPair().getPublic());
+        assertDoesNotThrow(() -> key.checkValidAt(Long.MIN_VALUE));
+        assertDoesNotThrow(() -> key.checkValidAt(Long.MAX_VALUE));
+        assertTrue(key.isValidAt(0));
+    }
+}
@@ -0,0 +1,132 @@
+package com.customs;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.PublicKey;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Подмена таблицы ключей по событиям каталога. Ожидание ограничено по времени и завершается,
+ * как только новая таблица опубликована, без фиксированных пауз.
+ */
+class WatchingKeyStoreTest {
+
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private static PublicKey firstKey;
+    private static PublicKey secondKey;
+
+    @TempDir
+    Path directory;
+    private WatchingKeyStore store;
+
+    @BeforeAll
+    static void generateKeys() throws Exception {
+        firstKey = TestEnvelopes.rsaKeyPair().getPublic();
+        secondKey = TestEnvelopes.rsaKeyPair().getPublic();
+    }
+
+    @BeforeEach
+    void openStore() throws Exception {
+        TestEnvelopes.writePem(directory, "acme", firstKey);
+        store = new WatchingKeyStore(directory);
+    }
+
+    @AfterEach
+    void closeStore() throws Exception {
+        store.close();
+    }
+
+    @Test
+    void atomicRenameRotatesKey() throws Exception {
+        assertEquals(List.of(firstKey), keys("acme"));
+        replace("acme.pem", secondKey);
+        await(() -> keys("acme").equals(List.of(secondKey)));
+        assertNull(store.lastError());
+    }
+
+    @Test
+    void newFileIsAddedAndDeletedFileIsDropped() throws Exception {
+        TestEnvelopes.writePem(directory, "beta", secondKey);
+        await(() -> keys("beta").equals(List.of(secondKey)));
+
+        Files.delete(directory.resolve("acme.pem"));
+        await(() -> keys("acme").isEmpty());
+        assertEquals(List.of(secondKey), keys("beta"));
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    void brokenFileKeepsPreviousKey() throws Exception {
+        long generation = store.generation();
+        Path broken = directory.resolve("acme.tmp");
+        Files.writeString(broken, "-----BEGIN PUBLIC KEY-----\nbroken\n-----END PUBLIC KEY-----\n");
+        Files.move(broken, directory.resolve("acme.pem"), StandardCopyOption.ATOMIC_MOVE);
+        await(() -> store.generation() > generation);
+
+        assertNotNull(store.lastError());
+        assertTrue(store.lastError().getMessage().contains("acme.pem"), store.lastError().getMessage());
+        assertEquals(List.of(firstKey), keys("acme"));
+
+        replace("acme.pem", secondKey);
+        await(() -> keys("acme").equals(List.of(secondKey)));
+        assertNull(store.lastError());
+    }
+
+    @Test
+    void overflowReloadsWholeDirectory() throws Exception {
+        TestEnvelopes.writePem(directory, "beta", firstKey);
+        await(() -> store.size() == 2);
+        store.close();
+
+        // События после close() не обрабатываются, поэтому изменения видны только после полной перезагрузки
+        replace("acme.pem", secondKey);
+        Files.delete(directory.resolve("beta.pem"));
+        TestEnvelopes.writePem(directory, "gamma", secondKey);
+        long generation = store.generation();
+        store.apply(Set.of(), true);
+
+        assertEquals(generation + 1, store.generation());
+        assertEquals(List.of(secondKey), keys("acme"));
+        assertTrue(keys("beta").isEmpty());
+        assertEquals(List.of(secondKey), keys("gamma"));
+        assertNull(store.lastError());
+    }
+
+    private List<PublicKey> keys(String sender) {
+        return store.resolve(sender).stream().map(TrustedKey::getPublicKey).collect(Collectors.toList());
+    }
+
+    /**
+     * Записывает ключ во вложенный каталог и переносит файл на место атомарно, как это делают утилиты развертывания.
+     */
+    private void replace(String fileName, PublicKey publicKey) throws Exception {
+        Path staging = Files.createDirectories(directory.resolve("staging"));
+        Path temporary = TestEnvelopes.writePem(staging, fileName, publicKey);
+        Files.move(temporary, directory.resolve(fileName), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() - deadline < 0, "Key table was not swapped within " + TIMEOUT_SECONDS + " s");
+            Thread.sleep(10);
+        }
+    }
+}